@@ -0,0 +1,2 @@
+@echo off
+java -cp "Notification.jar" KernelCheck %*
\ No newline at end of file
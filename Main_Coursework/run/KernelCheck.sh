@@ -0,0 +1,2 @@
+#!/bin/bash
+java -cp "Notification.jar" KernelCheck $*
\ No newline at end of file
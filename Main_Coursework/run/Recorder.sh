@@ -0,0 +1,2 @@
+#!/bin/bash
+java -cp "Notification.jar" -XX:+UseG1GC -XX:MinHeapFreeRatio=40 -XX:MaxHeapFreeRatio=50 Recorder $*
\ No newline at end of file
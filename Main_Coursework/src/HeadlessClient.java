@@ -0,0 +1,174 @@
+import client.Config;
+import client.HeadlessSink;
+import client.SinkStats;
+import shared.exceptions.ConnectException;
+import shared.interfaces.INotificationSource;
+import shared.util.Log;
+import shared.util.RMIUtils;
+
+import java.awt.*;
+import java.io.IOException;
+import java.rmi.registry.Registry;
+import java.rmi.server.RMISocketFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Headless Client Bootstrapper
+ * Connects many headless sinks to sources, and reports throughput/latency/gaps.
+ * <p>
+ * Usage: HeadlessClient [--server host] [--port port] [--sources id,id...] [--sinks sinks per source]
+ * [--mode discard|checksum|decode] [--viewport WxH] [--duration seconds] [--report seconds] [-v level]
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class HeadlessClient {
+
+    public static void main(String[] args) {
+        Log.setLogLevel(args);
+        Config.loadConfig();
+        ArrayList<String> argList = new ArrayList<>(Arrays.asList(args));
+
+        String server = getArgument(argList, "--server", Config.getRmiServer() != null ? Config.getRmiServer() : "localhost");
+        int port = Integer.parseInt(getArgument(argList, "--port", Config.getRmiPort() != null ? Config.getRmiPort().toString() : "1099"));
+        int sinksPerSource = Integer.parseInt(getArgument(argList, "--sinks", "1"));
+        int duration = Integer.parseInt(getArgument(argList, "--duration", "0"));
+        int reportInterval = Integer.parseInt(getArgument(argList, "--report", "5"));
+        String modeStr = getArgument(argList, "--mode", "discard");
+        String viewportStr = getArgument(argList, "--viewport", null);
+        String sourcesStr = getArgument(argList, "--sources", null);
+
+        HeadlessSink.Mode mode = Arrays.stream(HeadlessSink.Mode.values())
+                .filter(m -> m.name().equalsIgnoreCase(modeStr))
+                .findFirst()
+                .orElse(null);
+        if (mode == null) {
+            Log.Fatal(String.format("Mode '%s' was not recognised.", modeStr));
+            System.exit(1);
+        }
+
+        Dimension viewport = null;
+        if (viewportStr != null) {
+            String[] size = viewportStr.toLowerCase().split("x");
+            viewport = new Dimension(Integer.parseInt(size[0].trim()), Integer.parseInt(size[1].trim()));
+        }
+
+        try {
+            RMISocketFactory.setSocketFactory(Config.getSocketFactory());
+        } catch (IOException e) {
+            Log.Warn("Failed to add custom RMI Socket Factory...");
+        }
+
+        Registry registry;
+        List<String> sourceIDs;
+        try {
+            registry = RMIUtils.connect(server, port);
+            if (sourcesStr != null) {
+                sourceIDs = Arrays.stream(sourcesStr.split(",")).map(String::trim).filter(s -> s.length() != 0).collect(Collectors.toList());
+            } else if (Config.getSources().size() != 0) {
+                sourceIDs = Config.getSources().stream().map(s -> s.split("#", 2)[0]).collect(Collectors.toList());
+            } else {
+                sourceIDs = Arrays.stream(registry.list()).filter(s -> !s.equals("SourceProxy")).collect(Collectors.toList());
+            }
+        } catch (ConnectException | java.rmi.RemoteException e) {
+            Log.Fatal("Failed to connect to registry: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (sourceIDs.size() == 0) {
+            Log.Fatal("No sources to connect to.");
+            System.exit(1);
+        }
+
+        // Look each source up once, all the sinks share the stub
+        List<INotificationSource> sources = new ArrayList<>();
+        for (String sourceID : sourceIDs) {
+            try {
+                sources.add((INotificationSource) registry.lookup(sourceID));
+            } catch (Exception e) {
+                Log.Error(String.format("Failed to look up '%s': %s", sourceID, e.getMessage()));
+            }
+        }
+
+        // Create and register the sinks in parallel
+        SinkStats stats = new SinkStats();
+        List<HeadlessSink> sinks = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger failed = new AtomicInteger(0);
+        long start = System.nanoTime();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Config.getConnectThreads()));
+        final Dimension sinkViewport = viewport;
+        for (INotificationSource source : sources) {
+            for (int i = 0; i < sinksPerSource; i++) {
+                executor.execute(() -> {
+                    try {
+                        HeadlessSink sink = new HeadlessSink(mode, stats);
+                        sink.connect(source, sinkViewport);
+                        sinks.add(sink);
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        Log.Debug("Failed to connect sink: " + e.getMessage());
+                    }
+                });
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Log.Warn("Interrupted whilst connecting sinks.");
+        }
+        Log.Info(String.format("Connected %d sinks (%s mode) to %d sources in %dms, %d failed.",
+                sinks.size(), mode.name().toLowerCase(), sources.size(), (System.nanoTime() - start) / 1000000L, failed.get()));
+
+        // Disconnect when we're stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            Log.Info("Final: " + stats.report());
+            if (mode == HeadlessSink.Mode.Checksum) {
+                long checksum = 0;
+                synchronized (sinks) {
+                    for (HeadlessSink sink : sinks) checksum ^= sink.getChecksum();
+                }
+                Log.Info(String.format("Checksum: %016x", checksum));
+            }
+            synchronized (sinks) {
+                sinks.parallelStream().forEach(HeadlessSink::disconnect);
+            }
+        }, "ShutdownHandler"));
+
+        // Report until the duration is up
+        long end = (duration > 0) ? System.currentTimeMillis() + duration * 1000L : Long.MAX_VALUE;
+        while (System.currentTimeMillis() < end) {
+            try {
+                Thread.sleep(Math.min(reportInterval * 1000L, Math.max(1, end - System.currentTimeMillis())));
+            } catch (InterruptedException e) {
+                break;
+            }
+            Log.Info(stats.report());
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Gets the value of an argument
+     *
+     * @param argList      Arguments
+     * @param name         Argument name
+     * @param defaultValue Value if the argument isn't present
+     * @return Value
+     */
+    private static String getArgument(ArrayList<String> argList, String name, String defaultValue) {
+        int index = argList.indexOf(name);
+        if (index != -1 && index + 1 < argList.size()) {
+            return argList.get(index + 1);
+        }
+        return defaultValue;
+    }
+}
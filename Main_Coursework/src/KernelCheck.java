@@ -0,0 +1,309 @@
+import shared.util.ImageUtils;
+import shared.util.Log;
+import shared.util.PixelKernels;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.IndexColorModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Kernel Check Bootstrapper
+ * Checks the pixel kernels and ImageUtils' scaler give the same images as the code they replace, and times both.
+ * <p>
+ * Usage: KernelCheck [--size WxH] [--iterations n] [-v level]
+ * <br>
+ * Exits with 1 if any kernel differs from the code it replaces by more than its tolerance.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class KernelCheck {
+
+    private static final Random random = new Random(42);
+    private static boolean failed = false;
+
+    public static void main(String[] args) {
+        Log.setLogLevel(args);
+        ArrayList<String> argList = new ArrayList<>(Arrays.asList(args));
+
+        String[] size = getArgument(argList, "--size", "640x480").split("x");
+        int width = Integer.parseInt(size[0]);
+        int height = Integer.parseInt(size[1]);
+        int iterations = Integer.parseInt(getArgument(argList, "--iterations", "50"));
+
+        BufferedImage frame = createIndexedFrame(width / 2, height / 2);
+        BufferedImage picture = createPicture(width, height);
+
+        checkExpand(frame, iterations);
+        checkBlend(frame, picture, iterations);
+        checkDownscale(picture, iterations);
+        checkDiff(picture, iterations);
+        checkScale(picture, 2, 3, iterations);
+        checkScale(picture, 1, 3, iterations);
+        checkScale(picture, 1, 8, iterations);
+
+        if (failed) {
+            Log.Fatal("Kernels differ from the code they replace.");
+            System.exit(1);
+        }
+        Log.Info("Kernels match the code they replace.");
+    }
+
+    /**
+     * Palette expansion must match drawing the indexed frame onto an ARGB image exactly
+     */
+    private static void checkExpand(BufferedImage frame, int iterations) {
+        int[] expected = PixelKernels.getPixels(draw(frame));
+        int[] actual = PixelKernels.expandIndexed(frame);
+        report("expandIndexed", difference(expected, actual), 0, 0,
+                time(iterations, () -> draw(frame)),
+                time(iterations, () -> PixelKernels.expandIndexed(frame)));
+    }
+
+    /**
+     * Blending a frame with transparent pixels onto a picture must match Graphics2D SrcOver to within rounding
+     */
+    private static void checkBlend(BufferedImage frame, BufferedImage picture, int iterations) {
+        int width = picture.getWidth();
+        int height = picture.getHeight();
+        int x = width / 3;
+        int y = height / 3;
+
+        BufferedImage expected = draw(picture);
+        Graphics2D g2d = expected.createGraphics();
+        g2d.drawImage(frame, x, y, null);
+        g2d.dispose();
+
+        int[] pixels = PixelKernels.expandIndexed(frame);
+        int[] canvas = PixelKernels.getPixels(picture).clone();
+        PixelKernels.blend(pixels, frame.getWidth(), frame.getHeight(), canvas, width, height, x, y);
+        int[] actual = PixelKernels.getPixels(PixelKernels.fromPremultiplied(canvas, width, height));
+
+        report("blend", difference(PixelKernels.getPixels(expected), actual), 1, 0,
+                time(iterations, () -> {
+                    BufferedImage image = draw(picture);
+                    Graphics2D g = image.createGraphics();
+                    g.drawImage(frame, x, y, null);
+                    g.dispose();
+                }),
+                time(iterations, () -> {
+                    int[] c = PixelKernels.getPixels(picture).clone();
+                    PixelKernels.blend(PixelKernels.expandIndexed(frame), frame.getWidth(), frame.getHeight(), c, width, height, x, y);
+                    PixelKernels.fromPremultiplied(c, width, height);
+                }));
+    }
+
+    /**
+     * The box filter isn't the same filter as ImageUtils' bilinear/bicubic steps (they differ most at hard edges),
+     * so it only has to be close on average
+     */
+    private static void checkDownscale(BufferedImage picture, int iterations) {
+        int width = picture.getWidth() / 3;
+        int height = picture.getHeight() / 3;
+        int[] expected = PixelKernels.getPixels(ImageUtils.scaleImage(picture, width, height));
+        int[] actual = PixelKernels.downscale(PixelKernels.getPixels(picture), picture.getWidth(), picture.getHeight(), width, height);
+
+        report("downscale", difference(expected, actual), 255, 2,
+                time(iterations, () -> ImageUtils.scaleImage(picture, width, height)),
+                time(iterations, () -> PixelKernels.downscale(PixelKernels.getPixels(picture), picture.getWidth(), picture.getHeight(), width, height)));
+    }
+
+    /**
+     * ImageUtils.scaleImage (bilinear halving, then a bicubic step) must be close to Image.getScaledInstance with
+     * SCALE_SMOOTH (area averaging), which it replaced, at a fraction of the cost
+     *
+     * @param numerator   Scale numerator
+     * @param denominator Scale denominator
+     */
+    private static void checkScale(BufferedImage picture, int numerator, int denominator, int iterations) {
+        int width = picture.getWidth() * numerator / denominator;
+        int height = picture.getHeight() * numerator / denominator;
+        int[] expected = PixelKernels.getPixels(draw(picture.getScaledInstance(width, height, Image.SCALE_SMOOTH), width, height));
+        int[] actual = PixelKernels.getPixels(ImageUtils.scaleImage(picture, width, height));
+
+        report(String.format("scale %d/%d", numerator, denominator), difference(expected, actual), 255, 2,
+                time(iterations, () -> draw(picture.getScaledInstance(width, height, Image.SCALE_SMOOTH), width, height)),
+                time(iterations, () -> ImageUtils.scaleImage(picture, width, height)));
+    }
+
+    /**
+     * The changed rectangle must be exactly the bounds of the changed pixels
+     */
+    private static void checkDiff(BufferedImage picture, int iterations) {
+        int width = picture.getWidth();
+        int height = picture.getHeight();
+        int[] a = PixelKernels.getPixels(picture);
+        int[] b = a.clone();
+
+        boolean correct = PixelKernels.diffRect(a, b, width, height) == null;
+        Rectangle changed = new Rectangle(width / 5, height / 4, width / 7, height / 6);
+        for (int i = 0; i < 20; i++) {
+            int px = changed.x + random.nextInt(changed.width);
+            int py = changed.y + random.nextInt(changed.height);
+            b[py * width + px] ^= 0x00ffffff;
+        }
+        b[changed.y * width + changed.x] ^= 0x00ffffff;
+        b[(changed.y + changed.height - 1) * width + changed.x + changed.width - 1] ^= 0x00ffffff;
+        correct &= changed.equals(PixelKernels.diffRect(a, b, width, height));
+
+        BufferedImage other = PixelKernels.toImage(b, width, height);
+        report("diffRect", correct ? new int[]{0, 0} : new int[]{255, 255}, 0, 0,
+                time(iterations, () -> diffByGetRGB(picture, other)),
+                time(iterations, () -> PixelKernels.diffRect(a, b, width, height)));
+    }
+
+    /**
+     * What finding the changed rectangle would cost through BufferedImage, for comparison
+     */
+    private static Rectangle diffByGetRGB(BufferedImage a, BufferedImage b) {
+        Rectangle changed = null;
+        for (int y = 0; y < a.getHeight(); y++) {
+            for (int x = 0; x < a.getWidth(); x++) {
+                if (a.getRGB(x, y) == b.getRGB(x, y)) continue;
+                if (changed == null) {
+                    changed = new Rectangle(x, y, 1, 1);
+                } else {
+                    changed.add(new Rectangle(x, y, 1, 1));
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Logs the result of a check
+     *
+     * @param kernel        Kernel name
+     * @param difference    Maximum and mean (rounded up) channel difference
+     * @param maxTolerance  Largest allowed channel difference
+     * @param meanTolerance Largest allowed mean channel difference
+     * @param replacedTime  Time of the code the kernel replaced (ms per iteration)
+     * @param kernelTime    Time of the kernel (ms per iteration)
+     */
+    private static void report(String kernel, int[] difference, int maxTolerance, int meanTolerance, double replacedTime, double kernelTime) {
+        boolean passed = difference[0] <= maxTolerance && difference[1] <= meanTolerance;
+        failed |= !passed;
+        String result = String.format("%-13s %s  max diff: %3d, mean diff: %d  replaced: %7.3fms, kernel: %7.3fms (%.1fx)",
+                kernel, passed ? "OK  " : "FAIL", difference[0], difference[1], replacedTime, kernelTime, replacedTime / kernelTime);
+        if (passed) {
+            Log.Info(result);
+        } else {
+            Log.Error(result);
+        }
+    }
+
+    /**
+     * Compares two sets of ARGB pixels channel by channel.
+     * Fully transparent pixels are all treated as 0, as their colour is never seen.
+     *
+     * @return Maximum and mean (rounded up) channel difference
+     */
+    private static int[] difference(int[] expected, int[] actual) {
+        if (expected.length != actual.length) {
+            return new int[]{255, 255};
+        }
+        int max = 0;
+        long total = 0;
+        for (int i = 0; i < expected.length; i++) {
+            int e = (expected[i] >>> 24 == 0) ? 0 : expected[i];
+            int a = (actual[i] >>> 24 == 0) ? 0 : actual[i];
+            for (int shift = 0; shift < 32; shift += 8) {
+                int d = Math.abs(((e >>> shift) & 0xff) - ((a >>> shift) & 0xff));
+                max = Math.max(max, d);
+                total += d;
+            }
+        }
+        return new int[]{max, (int) ((total + expected.length * 4L - 1) / (expected.length * 4L))};
+    }
+
+    /**
+     * Times a task, after running it to warm up
+     *
+     * @return Milliseconds per iteration
+     */
+    private static double time(int iterations, Runnable task) {
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / 1e6 / iterations;
+    }
+
+    /**
+     * Draws an image onto a new TYPE_INT_ARGB image with Graphics2D
+     */
+    private static BufferedImage draw(BufferedImage image) {
+        BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = copy.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return copy;
+    }
+
+    /**
+     * Draws an image onto a new TYPE_INT_ARGB image of a given size with Graphics2D
+     */
+    private static BufferedImage draw(Image image, int width, int height) {
+        BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = copy.createGraphics();
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return copy;
+    }
+
+    /**
+     * Creates a GIF-like frame: random palette indices, one of which is transparent
+     */
+    private static BufferedImage createIndexedFrame(int width, int height) {
+        byte[] r = new byte[256], g = new byte[256], b = new byte[256];
+        random.nextBytes(r);
+        random.nextBytes(g);
+        random.nextBytes(b);
+        IndexColorModel colorModel = new IndexColorModel(8, 256, r, g, b, 0);
+
+        BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, colorModel);
+        byte[] indices = new byte[width * height];
+        random.nextBytes(indices);
+        frame.getRaster().setDataElements(0, 0, width, height, indices);
+        return frame;
+    }
+
+    /**
+     * Creates a smooth opaque picture (gradients and shapes), like a photographic GIF frame
+     */
+    private static BufferedImage createPicture(int width, int height) {
+        BufferedImage picture = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = picture.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+        g2d.fillRect(0, 0, width, height);
+        for (int i = 0; i < 30; i++) {
+            g2d.setColor(new Color(random.nextInt(0x1000000)));
+            g2d.fillOval(random.nextInt(width), random.nextInt(height), width / 8, height / 8);
+        }
+        g2d.dispose();
+        return picture;
+    }
+
+    /**
+     * Get an argument from the argument list
+     *
+     * @param argList      Argument list
+     * @param name         Argument name
+     * @param defaultValue Value if the argument isn't present
+     * @return Argument value
+     */
+    private static String getArgument(ArrayList<String> argList, String name, String defaultValue) {
+        int index = argList.indexOf(name);
+        if (index != -1 && index + 1 < argList.size()) {
+            return argList.get(index + 1);
+        }
+        return defaultValue;
+    }
+}
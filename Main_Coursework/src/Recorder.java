@@ -0,0 +1,129 @@
+import client.Config;
+import client.NotificationSink;
+import client.recording.GifExporter;
+import client.recording.StreamRecorder;
+import shared.exceptions.ConnectException;
+import shared.util.Log;
+import shared.util.RMIUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.rmi.server.RMISocketFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Recorder Bootstrapper
+ * Records sources to disk, or exports a recorded source to a GIF.
+ * <p>
+ * Usage: Recorder [--server host] [--port port] [--sources id,id...] [--directory dir] [--segment MB]
+ * [--report seconds] [-v level]
+ * <br>
+ * Sources are recorded at full resolution, without any frames being dropped.
+ * <br>
+ * Recorder --export recordingDir output.gif
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class Recorder {
+
+    public static void main(String[] args) {
+        Log.setLogLevel(args);
+        Config.loadConfig();
+        ArrayList<String> argList = new ArrayList<>(Arrays.asList(args));
+
+        int exportIndex = argList.indexOf("--export");
+        if (exportIndex != -1) {
+            if (exportIndex + 2 >= argList.size()) {
+                Log.Fatal("Usage: Recorder --export recordingDir output.gif");
+                System.exit(1);
+            }
+            try {
+                new GifExporter(new File(argList.get(exportIndex + 1))).export(new File(argList.get(exportIndex + 2)));
+            } catch (IOException e) {
+                Log.Fatal("Failed to export recording: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        String server = getArgument(argList, "--server", Config.getRmiServer() != null ? Config.getRmiServer() : "localhost");
+        int port = Integer.parseInt(getArgument(argList, "--port", Config.getRmiPort() != null ? Config.getRmiPort().toString() : "1099"));
+        File directory = new File(getArgument(argList, "--directory", "recordings"));
+        int segmentSize = Integer.parseInt(getArgument(argList, "--segment", "64")) * 1024 * 1024;
+        int reportInterval = Integer.parseInt(getArgument(argList, "--report", "10"));
+        String sourcesStr = getArgument(argList, "--sources", null);
+
+        try {
+            RMISocketFactory.setSocketFactory(Config.getSocketFactory());
+        } catch (IOException e) {
+            Log.Warn("Failed to add custom RMI Socket Factory...");
+        }
+
+        List<String> sourceIDs;
+        NotificationSink sink;
+        try {
+            if (sourcesStr != null) {
+                sourceIDs = Arrays.stream(sourcesStr.split(",")).map(String::trim).filter(s -> s.length() != 0).collect(Collectors.toList());
+            } else if (Config.getSources().size() != 0) {
+                sourceIDs = Config.getSources().stream().map(s -> s.split("#", 2)[0]).collect(Collectors.toList());
+            } else {
+                sourceIDs = Arrays.stream(RMIUtils.connect(server, port).list()).filter(s -> !s.equals("SourceProxy")).collect(Collectors.toList());
+            }
+            sink = new NotificationSink();
+            sink.connectRMI(server, port);
+        } catch (ConnectException | RemoteException e) {
+            Log.Fatal("Failed to connect to registry: " + e.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (sourceIDs.size() == 0) {
+            Log.Fatal("No sources to record.");
+            System.exit(1);
+        }
+
+        StreamRecorder recorder = new StreamRecorder(directory, segmentSize, 4096);
+        for (String sourceID : sourceIDs) {
+            try {
+                sink.connectSource(sourceID, recorder);
+            } catch (ConnectException e) {
+                Log.Error(String.format("Failed to connect to '%s': %s", sourceID, e.getMessage()));
+            }
+        }
+
+        // Finish writing when we're stopped
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            sink.disconnectAllSource();
+            recorder.close();
+        }, "RecorderShutdownHandler"));
+
+        while (true) {
+            try {
+                Thread.sleep(reportInterval * 1000L);
+            } catch (InterruptedException e) {
+                break;
+            }
+            Log.Info(recorder.report());
+        }
+    }
+
+    /**
+     * Gets the value of an argument
+     *
+     * @param argList      Arguments
+     * @param name         Argument name
+     * @param defaultValue Value if the argument isn't present
+     * @return Value
+     */
+    private static String getArgument(ArrayList<String> argList, String name, String defaultValue) {
+        int index = argList.indexOf(name);
+        if (index != -1 && index + 1 < argList.size()) {
+            return argList.get(index + 1);
+        }
+        return defaultValue;
+    }
+}
@@ -1,5 +1,6 @@
 package client;
 
+import shared.util.CustomRMISocketFactory;
 import shared.util.Log;
 import shared.util.UUIDUtils;
 
@@ -30,6 +31,29 @@ public class Config {
 
     private static boolean autoconnect = false;
 
+    private static boolean videoWall = false;
+
+    private static boolean showHud = false;
+
+    private static int playoutDelay = 100;
+
+    private static int maxFrameRate = 0;
+
+    private static boolean tcpNoDelay = true;
+
+    private static int sendBufferSize = 0;
+
+    private static int receiveBufferSize = 0;
+
+    private static int compressionLevel = 0;
+
+    private static int connectThreads = 8;
+
+    private static int mailboxThreads = Runtime.getRuntime().availableProcessors();
+    private static int mailboxSize = 4;
+
+    private static String traceFile = null;
+
     private static String rmiServer = null;
     private static Integer rmiPort = null;
 
@@ -128,6 +152,218 @@ public class Config {
         saveConfig();
     }
 
+    /**
+     * Returns whether sources should be displayed on a single video wall, rather than a window each
+     * @return True if sources should be displayed on the video wall
+     */
+    public static boolean isVideoWall() {
+        return videoWall;
+    }
+
+    /**
+     * Sets whether sources should be displayed on a single video wall, rather than a window each
+     * @param videoWall True if sources should be displayed on the video wall
+     */
+    public static void setVideoWall(boolean videoWall) {
+        Config.videoWall = videoWall;
+        saveConfig();
+    }
+
+    /**
+     * Returns whether the performance HUD is shown on source windows
+     * @return True if the HUD is shown
+     */
+    public static boolean isShowHud() {
+        return showHud;
+    }
+
+    /**
+     * Sets whether the performance HUD is shown on source windows
+     * @param showHud True if the HUD is shown
+     */
+    public static void setShowHud(boolean showHud) {
+        Config.showHud = showHud;
+        saveConfig();
+    }
+
+    /**
+     * Get the most frames per second sources are asked to send
+     * @return Frame rate (0 for no limit)
+     */
+    public static int getMaxFrameRate() {
+        return maxFrameRate;
+    }
+
+    /**
+     * Set the most frames per second sources are asked to send (takes effect when next connecting to a source)
+     * @param maxFrameRate Frame rate (0 for no limit)
+     */
+    public static void setMaxFrameRate(int maxFrameRate) {
+        Config.maxFrameRate = maxFrameRate;
+        saveConfig();
+    }
+
+    /**
+     * Get whether Nagle's algorithm is disabled on RMI connections (small messages are sent straight away)
+     * @return True if TCP_NODELAY is set
+     */
+    public static boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Set whether Nagle's algorithm is disabled on RMI connections (takes effect on restart)
+     * @param tcpNoDelay True to set TCP_NODELAY
+     */
+    public static void setTcpNoDelay(boolean tcpNoDelay) {
+        Config.tcpNoDelay = tcpNoDelay;
+        saveConfig();
+    }
+
+    /**
+     * Get the send buffer size of RMI connections
+     * @return Size in bytes (0 for the system default)
+     */
+    public static int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * Set the send buffer size of RMI connections (takes effect on restart)
+     * @param sendBufferSize Size in bytes (0 for the system default)
+     */
+    public static void setSendBufferSize(int sendBufferSize) {
+        Config.sendBufferSize = sendBufferSize;
+        saveConfig();
+    }
+
+    /**
+     * Get the receive buffer size of RMI connections
+     * @return Size in bytes (0 for the system default)
+     */
+    public static int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Set the receive buffer size of RMI connections (takes effect on restart)
+     * @param receiveBufferSize Size in bytes (0 for the system default)
+     */
+    public static void setReceiveBufferSize(int receiveBufferSize) {
+        Config.receiveBufferSize = receiveBufferSize;
+        saveConfig();
+    }
+
+    /**
+     * Get the level RMI connections are compressed at, if the other end also compresses
+     * @return Deflate level, 1 (fastest) to 9 (smallest); 0 for no compression
+     */
+    public static int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the level RMI connections are compressed at, if the other end also compresses (takes effect on restart)
+     * @param compressionLevel Deflate level, 1 (fastest) to 9 (smallest); 0 for no compression
+     */
+    public static void setCompressionLevel(int compressionLevel) {
+        Config.compressionLevel = compressionLevel;
+        saveConfig();
+    }
+
+    /**
+     * Creates a socket factory for RMI connections using the configured options
+     * @return Socket factory
+     */
+    public static CustomRMISocketFactory getSocketFactory() {
+        return new CustomRMISocketFactory(tcpNoDelay, sendBufferSize, receiveBufferSize, compressionLevel);
+    }
+
+    /**
+     * Get the file the latency histograms are exported to when the client exits
+     * @return File path, or null if the histograms aren't exported
+     */
+    public static String getTraceFile() {
+        return traceFile;
+    }
+
+    /**
+     * Set the file the latency histograms are exported to when the client exits
+     * @param traceFile File path (can't contain ':'), or null to not export the histograms
+     */
+    public static void setTraceFile(String traceFile) {
+        Config.traceFile = traceFile;
+        saveConfig();
+    }
+
+    /**
+     * Get the target delay of the jitter buffer frames are played out through
+     * @return Target delay (in milliseconds), 0 if frames are displayed as soon as they arrive
+     */
+    public static int getPlayoutDelay() {
+        return playoutDelay;
+    }
+
+    /**
+     * Set the target delay of the jitter buffer frames are played out through
+     * @param playoutDelay Target delay (in milliseconds), 0 to display frames as soon as they arrive
+     */
+    public static void setPlayoutDelay(int playoutDelay) {
+        Config.playoutDelay = playoutDelay;
+        saveConfig();
+    }
+
+    /**
+     * Get the number of sources that are connected to at once when autoconnecting
+     * @return Number of threads
+     */
+    public static int getConnectThreads() {
+        return connectThreads;
+    }
+
+    /**
+     * Set the number of sources that are connected to at once when autoconnecting
+     * @param connectThreads Number of threads
+     */
+    public static void setConnectThreads(int connectThreads) {
+        Config.connectThreads = connectThreads;
+        saveConfig();
+    }
+
+    /**
+     * Get the number of threads used to handle received notifications
+     * @return Number of threads
+     */
+    public static int getMailboxThreads() {
+        return mailboxThreads;
+    }
+
+    /**
+     * Set the number of threads used to handle received notifications
+     * @param mailboxThreads Number of threads
+     */
+    public static void setMailboxThreads(int mailboxThreads) {
+        Config.mailboxThreads = mailboxThreads;
+        saveConfig();
+    }
+
+    /**
+     * Get the number of notifications that can wait to be handled (per source) before the oldest is dropped
+     * @return Mailbox size
+     */
+    public static int getMailboxSize() {
+        return mailboxSize;
+    }
+
+    /**
+     * Set the number of notifications that can wait to be handled (per source) before the oldest is dropped
+     * @param mailboxSize Mailbox size
+     */
+    public static void setMailboxSize(int mailboxSize) {
+        Config.mailboxSize = mailboxSize;
+        saveConfig();
+    }
+
     /**
      * Saves the config to the file specified by configLocation.
      */
@@ -190,6 +426,56 @@ public class Config {
         b.append(autoconnect);
         b.append(";\n");
 
+        b.append("wall: ");
+        b.append(videoWall);
+        b.append(";\n");
+
+        b.append("hud: ");
+        b.append(showHud);
+        b.append(";\n");
+
+        b.append("playoutDelay: ");
+        b.append(playoutDelay);
+        b.append(";\n");
+
+        b.append("maxfps: ");
+        b.append(maxFrameRate);
+        b.append(";\n");
+
+        b.append("tcpNoDelay: ");
+        b.append(tcpNoDelay);
+        b.append(";\n");
+
+        b.append("sendBuffer: ");
+        b.append(sendBufferSize);
+        b.append(";\n");
+
+        b.append("receiveBuffer: ");
+        b.append(receiveBufferSize);
+        b.append(";\n");
+
+        b.append("compression: ");
+        b.append(compressionLevel);
+        b.append(";\n");
+
+        b.append("connectThreads: ");
+        b.append(connectThreads);
+        b.append(";\n");
+
+        b.append("mailboxThreads: ");
+        b.append(mailboxThreads);
+        b.append(";\n");
+
+        b.append("mailboxSize: ");
+        b.append(mailboxSize);
+        b.append(";\n");
+
+        if (traceFile != null) {
+            b.append("traceFile: ");
+            b.append(traceFile);
+            b.append(";\n");
+        }
+
         sources.forEach(e -> {
             b.append("source: ");
             b.append(e);
@@ -269,6 +555,42 @@ public class Config {
             case "autoconnect":
                 autoconnect = Boolean.parseBoolean(strings[1].trim());
                 break;
+            case "wall":
+                videoWall = Boolean.parseBoolean(strings[1].trim());
+                break;
+            case "hud":
+                showHud = Boolean.parseBoolean(strings[1].trim());
+                break;
+            case "playoutDelay":
+                playoutDelay = Integer.parseInt(strings[1].trim());
+                break;
+            case "maxfps":
+                maxFrameRate = Integer.parseInt(strings[1].trim());
+                break;
+            case "tcpNoDelay":
+                tcpNoDelay = Boolean.parseBoolean(strings[1].trim());
+                break;
+            case "sendBuffer":
+                sendBufferSize = Integer.parseInt(strings[1].trim());
+                break;
+            case "receiveBuffer":
+                receiveBufferSize = Integer.parseInt(strings[1].trim());
+                break;
+            case "compression":
+                compressionLevel = Integer.parseInt(strings[1].trim());
+                break;
+            case "connectThreads":
+                connectThreads = Integer.parseInt(strings[1].trim());
+                break;
+            case "mailboxThreads":
+                mailboxThreads = Integer.parseInt(strings[1].trim());
+                break;
+            case "mailboxSize":
+                mailboxSize = Integer.parseInt(strings[1].trim());
+                break;
+            case "traceFile":
+                traceFile = strings[1].trim();
+                break;
             case "server":
                 String[] server = strings[1].split(",");
                 if(server.length != 2) {
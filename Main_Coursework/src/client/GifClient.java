@@ -2,7 +2,11 @@ package client;
 
 import client.components.GifWindow;
 import client.components.HintTextFieldUI;
+import client.components.PerformanceHud;
+import client.components.VideoWall;
+import client.components.WallWindow;
 import javafx.util.Pair;
+import shared.codec.PayloadCodecs;
 import shared.exceptions.ConnectException;
 import shared.interfaces.INotificationSource;
 import shared.util.ImageUtils;
@@ -13,10 +17,16 @@ import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Client GUI Class
@@ -39,6 +49,7 @@ public class GifClient extends JFrame {
     JLabel label_port;
     JTextField text_port;
     ConcurrentHashMap<String, GifWindow> gifWindows = new ConcurrentHashMap<>();
+    WallWindow wallWindow;
     ActionListener rmiConnectListener = new RMIConnect();
     ActionListener sourceConnectListener = new SourceConnect();
     private boolean shouldAutoconnect = true;
@@ -95,8 +106,24 @@ public class GifClient extends JFrame {
         sink.disconnectSource(sourceID);
 
         GifWindow w = gifClient.gifWindows.get(sourceID);
-        gifClient.gifWindows.remove(sourceID);
-        w.dispose();
+        if (w != null) {
+            gifClient.gifWindows.remove(sourceID);
+            w.dispose();
+        } else if (gifClient.wallWindow != null) {
+            gifClient.wallWindow.getWall().removeTile(sourceID);
+        }
+    }
+
+    /**
+     * Gets the video wall window, creating it if it doesn't exist
+     *
+     * @return Wall window
+     */
+    private synchronized WallWindow getWallWindow() {
+        if (wallWindow == null) {
+            wallWindow = new WallWindow();
+        }
+        return wallWindow;
     }
 
     /**
@@ -211,6 +238,10 @@ public class GifClient extends JFrame {
                 w.getValue().dispose();
                 gifWindows.remove(w.getKey());
             });
+            if (wallWindow != null) {
+                wallWindow.getWall().getSourceIDs().forEach(wallWindow.getWall()::removeTile);
+                wallWindow.setVisible(false);
+            }
 
             if (sink.isConnectedSource()) {
                 sink.disconnectAllSource();
@@ -268,15 +299,18 @@ public class GifClient extends JFrame {
             }
 
             // Otherwise, check if we're already connected, if so, bring the window to the front
-            if (gifWindows.containsKey(source)) {
-                GifWindow window = gifWindows.get(source);
+            String sourceID = source.split("#", 2)[0];
+            if (gifWindows.containsKey(sourceID)) {
+                GifWindow window = gifWindows.get(sourceID);
                 window.setVisible(true);
                 window.toFront();
                 window.repaint();
+            } else if (wallWindow != null && wallWindow.getWall().getTile(sourceID) != null) {
+                wallWindow.setVisible(true);
+                wallWindow.toFront();
             } else {
                 // Else, connect to the source
-                SourceConnectThread t = new SourceConnectThread(source);
-                t.start();
+                new Thread(new SourceConnector(source), "SourceThread").start();
             }
         } catch (Exception ex) {
             SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
@@ -351,13 +385,32 @@ public class GifClient extends JFrame {
 
             // If autoconnect, then connect to all the sources
             if(Config.isAutoconnect() && shouldAutoconnect) {
-                for (String source : Config.getSources()) {
-                    sourceConnect(source);
-                }
+                autoconnect();
                 shouldAutoconnect = false;
             }
         }
 
+        /**
+         * Connects to all the configured sources in parallel, on a bounded number of threads
+         */
+        private void autoconnect() {
+            List<String> sources = Config.getSources().stream()
+                    .filter(s -> !gifWindows.containsKey(s.split("#", 2)[0]))
+                    .collect(Collectors.toList());
+            if (sources.size() == 0) return;
+
+            long start = System.nanoTime();
+            ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(Config.getConnectThreads(), sources.size())));
+            sources.forEach(s -> executor.execute(new SourceConnector(s)));
+            executor.shutdown();
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Log.Warn("Interrupted whilst autoconnecting.");
+            }
+            Log.Info(String.format("Autoconnected to %d sources in %dms.", sources.size(), (System.nanoTime() - start) / 1000000L));
+        }
+
         @SuppressWarnings("unchecked")
         private boolean connectProxy(){
             try {
@@ -382,21 +435,36 @@ public class GifClient extends JFrame {
     }
 
     /**
-     * Thread to Connect to a Source
+     * Task to Connect to a Source (run on its own thread, or on the autoconnect executor)
      */
-    private class SourceConnectThread extends Thread {
+    private class SourceConnector implements Runnable {
 
         private String sourceID;
+        private String variant;
 
-        public SourceConnectThread(String sourceID) {
-            super("SourceThread");
-            this.sourceID = sourceID;
+        /**
+         * Creates a task to connect to a source
+         *
+         * @param source SourceID, optionally followed by '#' and the name of the variant to subscribe to
+         */
+        public SourceConnector(String source) {
+            String[] parts = source.split("#", 2);
+            this.sourceID = parts[0];
+            this.variant = (parts.length == 2 && parts[1].trim().length() != 0) ? parts[1].trim() : null;
         }
 
         @Override
         public void run() {
+            if (Config.isVideoWall()) {
+                runWall();
+                return;
+            }
+
             // Create a window
             GifWindow window = new GifWindow(sourceID);
+            if (variant != null) {
+                window.setTitle(String.format("%s (%s)", sourceID, variant));
+            }
 
             // Disable GUI temporarily
             SwingUtilities.invokeLater(() -> {
@@ -407,14 +475,26 @@ public class GifClient extends JFrame {
 
             try {
                 // Connect to the source with a callback to update the GifWindow
-                sink.connectSource(sourceID, n -> SwingUtilities.invokeLater(() -> {
+                // The callback runs on a mailbox thread, so the image is decoded there rather than on the EDT
+                PerformanceHud hud = window.getHud();
+                sink.connectSource(sourceID, n -> {
+                    byte[] frame = PayloadCodecs.getBytes(n.getData());
+                    if (frame == null) return;
+                    hud.frameReceived(frame.length);
+                    if (n.getTrace() != null) hud.transportLatency(n.getTrace().getRoundTrip());
+
+                    // Don't bother decoding frames that won't be seen
+                    if (!window.isStreamVisible()) return;
                     try {
-                        window.displayImage(ImageUtils.bytesToImage((byte[]) n.getData()));
+                        long start = System.nanoTime();
+                        BufferedImage image = ImageUtils.bytesToImage(frame, window.getImagePool());
+                        hud.frameDecoded(System.nanoTime() - start);
+                        window.displayImage(image, n.getTimeMillis(), n.getTrace());
                     } catch (IOException e1) {
                         Log.Error("Failed to convert bytes to image: " + e1.getMessage());
                         e1.printStackTrace();
                     }
-                }));
+                }, window.getViewport(), variant);
 
                 // Store the window
                 gifWindows.put(sourceID, window);
@@ -440,6 +520,54 @@ public class GifClient extends JFrame {
                 });
             }
         }
+
+        /**
+         * Connects to the source and displays it on the video wall
+         */
+        private void runWall() {
+            // Add a tile to the wall
+            WallWindow wallWindow = getWallWindow();
+            VideoWall.Tile tile = wallWindow.getWall().addTile(sourceID, variant != null ? String.format("%s (%s)", sourceID, variant) : sourceID);
+
+            // Disable GUI temporarily
+            SwingUtilities.invokeLater(() -> {
+                button_connect.setEnabled(false);
+                text_source.setEnabled(false);
+                combo_source.setEnabled(false);
+            });
+
+            try {
+                // Connect to the source with a callback to update the tile
+                sink.connectSource(sourceID, n -> {
+                    // Don't bother decoding frames that won't be seen
+                    if (!wallWindow.isStreamVisible()) return;
+                    try {
+                        tile.offerImage(ImageUtils.bytesToImage(PayloadCodecs.getBytes(n.getData()), tile.getImagePool()), n.getTimeMillis());
+                    } catch (IOException e1) {
+                        Log.Error("Failed to convert bytes to image: " + e1.getMessage());
+                        e1.printStackTrace();
+                    }
+                }, tile.getViewport(), variant);
+
+                // Display wall
+                SwingUtilities.invokeLater(() -> wallWindow.setVisible(true));
+
+            } catch (ConnectException ex) {
+                // Inform user we failed to connect, then remove the tile as we have no use for it
+                wallWindow.getWall().removeTile(sourceID);
+                SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(
+                        GifClient.this,
+                        ex.getMessage(),
+                        "Failed to connect", JOptionPane.ERROR_MESSAGE));
+            } finally {
+                // Now re-enable the GUI
+                SwingUtilities.invokeLater(() -> {
+                    button_connect.setEnabled(true);
+                    text_source.setEnabled(true);
+                    combo_source.setEnabled(true);
+                });
+            }
+        }
     }
 
     /**
@@ -0,0 +1,150 @@
+package client;
+
+import shared.Notification;
+import shared.codec.PayloadCodecs;
+import shared.exceptions.RegisterFailException;
+import shared.interfaces.INotificationSink;
+import shared.interfaces.INotificationSource;
+import shared.util.ImagePool;
+import shared.util.ImageUtils;
+import shared.util.Log;
+
+import java.awt.*;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * A sink with no display, for benchmarking sources and for server-side consumers.
+ * Unlike NotificationSink, it has no config/mailboxes/threads of its own, and gets its own SinkID from the source,
+ * so thousands of them can run in one process.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class HeadlessSink extends UnicastRemoteObject implements INotificationSink {
+
+    /**
+     * Gaps in delivery longer than this many times the average interval are counted
+     */
+    private static final double GAP_FACTOR = 2.5;
+
+    private final Mode mode;
+    private final SinkStats stats;
+
+    private INotificationSource source;
+    private UUID sinkID;
+
+    private ImagePool imagePool;
+    private long lastReceived = 0;
+    private double interval = 0;
+    private long checksum = 0;
+
+    /**
+     * Creates a headless sink
+     *
+     * @param mode  What to do with received frames
+     * @param stats Statistics to record received frames in
+     * @throws RemoteException
+     */
+    public HeadlessSink(Mode mode, SinkStats stats) throws RemoteException {
+        super();
+        this.mode = mode;
+        this.stats = stats;
+    }
+
+    /**
+     * Registers this sink with a source
+     *
+     * @param source   Source to register with
+     * @param viewport Size of the area to request renditions for (null if any)
+     * @throws RemoteException
+     * @throws RegisterFailException
+     */
+    public void connect(INotificationSource source, Dimension viewport) throws RemoteException, RegisterFailException {
+        this.sinkID = source.register(this);
+        this.source = source;
+        if (viewport != null) source.setViewport(sinkID, viewport);
+    }
+
+    /**
+     * Unregisters this sink from its source
+     */
+    public void disconnect() {
+        if (source == null) return;
+        try {
+            source.unRegister(sinkID);
+        } catch (RemoteException e) {
+            Log.Warn("Failed to unregister headless sink: " + e.getMessage());
+        }
+        source = null;
+        try {
+            UnicastRemoteObject.unexportObject(this, true);
+        } catch (RemoteException e) {
+            // Not exported anymore anyway
+        }
+    }
+
+    /**
+     * Notifies a Sink
+     *
+     * @param notification Notification
+     * @throws RemoteException
+     */
+    @Override
+    public void notify(Notification<?> notification) throws RemoteException {
+        long now = System.currentTimeMillis();
+        byte[] frame = PayloadCodecs.getBytes(notification.getData());
+        if (frame == null) return;
+
+        synchronized (this) {
+            if (lastReceived != 0) {
+                long gap = now - lastReceived;
+                if (interval != 0 && gap > GAP_FACTOR * interval) {
+                    stats.gap();
+                }
+                interval = (interval == 0) ? gap : 0.1 * gap + 0.9 * interval;
+            }
+            lastReceived = now;
+
+            try {
+                switch (mode) {
+                    case Checksum:
+                        CRC32 crc = new CRC32();
+                        crc.update(frame, 0, frame.length);
+                        checksum ^= crc.getValue();
+                        break;
+                    case Decode:
+                        if (imagePool == null) imagePool = new ImagePool(1);
+                        imagePool.release(ImageUtils.bytesToImage(frame, imagePool));
+                        break;
+                }
+            } catch (IOException e) {
+                stats.error();
+                Log.Debug("Failed to decode frame: " + e.getMessage());
+                return;
+            }
+        }
+        stats.received(frame.length, now - notification.getTimeMillis());
+    }
+
+    /**
+     * Gets the XOR of the checksums of the frames received (in Checksum mode)
+     *
+     * @return Checksum
+     */
+    public synchronized long getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * What a headless sink does with received frames
+     */
+    public enum Mode {
+        Discard,
+        Checksum,
+        Decode
+    }
+}
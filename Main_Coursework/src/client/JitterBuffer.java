@@ -0,0 +1,284 @@
+package client;
+
+import shared.util.ImagePool;
+import shared.util.Log;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Playout buffer for a source's frames.
+ * Frames are held for a short delay, then presented on the source's own schedule (by source timestamp), so
+ * network/worker pool jitter doesn't reach the screen.
+ * The delay grows when frames arrive too late to be presented on time, and shrinks back towards the target when
+ * delivery is steady.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class JitterBuffer {
+
+    /**
+     * Largest delay the buffer will adapt to (in milliseconds)
+     */
+    private static final long MAX_DELAY = 1000;
+
+    /**
+     * Number of frames presented on time before the delay is reduced
+     */
+    private static final int SHRINK_FRAMES = 100;
+
+    /**
+     * Number of frames the minimum transit time is measured over
+     */
+    private static final int TRANSIT_WINDOW = 200;
+
+    /**
+     * Thread that presents the frames of all the buffers
+     */
+    private static final ScheduledExecutorService playout = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "PlayoutThread");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final String sourceID;
+    private final ObjLongConsumer<BufferedImage> presenter;
+    private final ImagePool imagePool;
+    private final long targetDelay;
+
+    private long delay;
+    private double jitter = 0;
+    private double interval = 0;
+
+    private long baseTransit = Long.MAX_VALUE;
+    private long windowTransit = Long.MAX_VALUE;
+    private int windowFrames = 0;
+    private long lastTransit = Long.MIN_VALUE;
+    private long lastSourceTime = Long.MIN_VALUE;
+    private long lastPresented = Long.MIN_VALUE;
+    private int onTimeFrames = 0;
+    private long lastGrow = 0;
+    private boolean closed = false;
+
+    private final AtomicInteger depth = new AtomicInteger(0);
+    private long presented = 0;
+    private long underruns = 0;
+    private long lateDrops = 0;
+
+    /**
+     * Creates a jitter buffer
+     *
+     * @param sourceID    Source the buffer is for
+     * @param presenter   Called (on the playout thread) with each frame when it is due
+     * @param imagePool   Pool to return dropped frames to (may be null)
+     * @param targetDelay Target delay (in milliseconds), 0 presents frames as soon as they arrive
+     */
+    public JitterBuffer(String sourceID, Consumer<BufferedImage> presenter, ImagePool imagePool, long targetDelay) {
+        this(sourceID, (frame, sourceTime) -> presenter.accept(frame), imagePool, targetDelay);
+    }
+
+    /**
+     * Creates a jitter buffer
+     *
+     * @param sourceID    Source the buffer is for
+     * @param presenter   Called (on the playout thread) with each frame and its source time when it is due
+     * @param imagePool   Pool to return dropped frames to (may be null)
+     * @param targetDelay Target delay (in milliseconds), 0 presents frames as soon as they arrive
+     */
+    public JitterBuffer(String sourceID, ObjLongConsumer<BufferedImage> presenter, ImagePool imagePool, long targetDelay) {
+        this.sourceID = sourceID;
+        this.presenter = presenter;
+        this.imagePool = imagePool;
+        this.targetDelay = Math.max(0, targetDelay);
+        this.delay = this.targetDelay;
+    }
+
+    /**
+     * Adds a frame to the buffer
+     *
+     * @param sourceTime Time the source sent the frame (in milliseconds, source clock)
+     * @param frame      Frame
+     */
+    public void offer(long sourceTime, BufferedImage frame) {
+        if (targetDelay == 0) {
+            presenter.accept(frame, sourceTime);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long due;
+        synchronized (this) {
+            if (closed || sourceTime <= lastPresented) {
+                // Older than what's already on screen
+                lateDrop(frame);
+                return;
+            }
+            updateEstimates(now, sourceTime);
+
+            // Map the source time onto our clock, using the fastest transit seen as the reference
+            due = sourceTime + baseTransit + delay;
+            if (due < now - Math.max(interval, 1)) {
+                // Its slot has already passed, so the next frame is due; drop it rather than showing it late
+                lateDrop(frame);
+                return;
+            }
+            if (due < now) {
+                // Buffer ran dry; show it late
+                underrun();
+            }
+            depth.incrementAndGet();
+        }
+        playout.schedule(() -> present(sourceTime, frame), Math.max(0, due - now), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Updates the transit time, jitter, and frame interval estimates with a received frame
+     *
+     * @param now        Time the frame was received
+     * @param sourceTime Time the source sent the frame
+     */
+    private void updateEstimates(long now, long sourceTime) {
+        long transit = now - sourceTime;
+
+        // The minimum transit is tracked over a window, so the reference can follow clock drift
+        windowTransit = Math.min(windowTransit, transit);
+        baseTransit = Math.min(baseTransit, transit);
+        if (++windowFrames >= TRANSIT_WINDOW) {
+            baseTransit = windowTransit;
+            windowTransit = Long.MAX_VALUE;
+            windowFrames = 0;
+        }
+
+        if (lastTransit != Long.MIN_VALUE) {
+            jitter += (Math.abs(transit - lastTransit) - jitter) / 16d;
+        }
+        if (lastSourceTime != Long.MIN_VALUE && sourceTime > lastSourceTime) {
+            long gap = sourceTime - lastSourceTime;
+            interval = (interval == 0) ? gap : 0.1 * gap + 0.9 * interval;
+        }
+        lastTransit = transit;
+        lastSourceTime = Math.max(lastSourceTime, sourceTime);
+    }
+
+    /**
+     * Presents a frame when it is due
+     *
+     * @param sourceTime Time the source sent the frame
+     * @param frame      Frame
+     */
+    private void present(long sourceTime, BufferedImage frame) {
+        depth.decrementAndGet();
+        synchronized (this) {
+            if (closed || sourceTime <= lastPresented) {
+                lateDrop(frame);
+                return;
+            }
+            lastPresented = sourceTime;
+            presented++;
+
+            // Shrink back towards the target when delivery has been steady for a while
+            if (++onTimeFrames >= SHRINK_FRAMES) {
+                onTimeFrames = 0;
+                long floor = Math.max(targetDelay, (long) (3 * jitter));
+                if (delay > floor) {
+                    setDelay(delay - Math.max(1, (delay - floor) / 4));
+                }
+            }
+        }
+        presenter.accept(frame, sourceTime);
+    }
+
+    /**
+     * Records a frame that arrived too late to present
+     *
+     * @param frame Frame
+     */
+    private void lateDrop(BufferedImage frame) {
+        lateDrops++;
+        grow();
+        if (imagePool != null) imagePool.release(frame);
+    }
+
+    /**
+     * Records a frame that was presented late, as the buffer was empty
+     */
+    private void underrun() {
+        underruns++;
+        grow();
+    }
+
+    /**
+     * Increases the delay after a late frame.
+     * The delay is only increased once per delay period, so a burst of late frames doesn't push it to the max.
+     */
+    private void grow() {
+        onTimeFrames = 0;
+        long now = System.currentTimeMillis();
+        if (!closed && now - lastGrow > delay) {
+            lastGrow = now;
+            setDelay(Math.min(MAX_DELAY, delay + Math.max(1, (long) Math.max(interval, jitter))));
+        }
+    }
+
+    private void setDelay(long delay) {
+        if (delay == this.delay) return;
+        Log.Debug(String.format("Jitter buffer for %s: delay %dms -> %dms (jitter: %.1fms)", sourceID, this.delay, delay, jitter));
+        this.delay = delay;
+    }
+
+    /**
+     * Stops the buffer; frames still waiting are dropped
+     */
+    public synchronized void close() {
+        closed = true;
+        Log.Debug(this.toString());
+    }
+
+    /**
+     * Gets the number of frames waiting to be presented
+     *
+     * @return Depth
+     */
+    public int getDepth() {
+        return depth.get();
+    }
+
+    /**
+     * Gets the current playout delay
+     *
+     * @return Delay (in milliseconds)
+     */
+    public synchronized long getDelay() {
+        return delay;
+    }
+
+    /**
+     * Gets the number of frames that were presented late because the buffer was empty
+     *
+     * @return Number of underruns
+     */
+    public synchronized long getUnderruns() {
+        return underruns;
+    }
+
+    /**
+     * Gets the number of frames dropped because they arrived too late
+     *
+     * @return Number of frames
+     */
+    public synchronized long getLateDrops() {
+        return lateDrops;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("source: %s, depth: %d, delay: %dms (target: %dms), jitter: %.1fms, presented: %d, underruns: %d, late drops: %d",
+                sourceID, getDepth(), delay, targetDelay, jitter, presented, underruns, lateDrops);
+    }
+}
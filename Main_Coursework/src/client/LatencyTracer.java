@@ -0,0 +1,132 @@
+package client;
+
+import shared.Trace;
+import shared.util.LatencyHistogram;
+import shared.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Breaks the latency of traced notifications down into stages, each recorded in a histogram:
+ * <ul>
+ * <li>dispatch - produced to dispatched, on the source (worker pool queueing)</li>
+ * <li>network - dispatched to received (RMI, serialisation, network)</li>
+ * <li>display - received to painted, on the sink (mailbox, decoding, jitter buffer, painting)</li>
+ * <li>total - produced to painted</li>
+ * </ul>
+ * The network and total stages cross hosts, so the source timestamps are moved onto the sink's clock first.
+ * The offset between the clocks is estimated per source, from the fastest transit seen recently, less half the
+ * round trip time the source measured; like NTP, this is exact when the network is symmetric.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class LatencyTracer {
+
+    /**
+     * Number of notifications the clock offset is estimated over, before the estimate is refreshed
+     */
+    private static final int OFFSET_WINDOW = 200;
+
+    private final LatencyHistogram dispatch = new LatencyHistogram("dispatch");
+    private final LatencyHistogram network = new LatencyHistogram("network");
+    private final LatencyHistogram display = new LatencyHistogram("display");
+    private final LatencyHistogram total = new LatencyHistogram("total");
+
+    private final ConcurrentHashMap<String, ClockOffset> offsets = new ConcurrentHashMap<>();
+
+    /**
+     * Records a received notification's trace
+     *
+     * @param sourceID Source that sent the notification
+     * @param trace    Trace, stamped as received
+     */
+    public void received(String sourceID, Trace trace) {
+        if (trace == null || trace.getDispatched() == 0) return;
+        dispatch.record(trace.getDispatched() - trace.getProduced());
+
+        ClockOffset offset = offsets.computeIfAbsent(sourceID, k -> new ClockOffset());
+        network.record(trace.getReceived() - trace.getDispatched() - offset.update(trace));
+    }
+
+    /**
+     * Records a painted notification's trace
+     *
+     * @param sourceID Source that sent the notification
+     * @param trace    Trace, stamped as received and painted
+     * @return Total latency (produced to painted, in nanoseconds), or -1 if it isn't known
+     */
+    public long painted(String sourceID, Trace trace) {
+        if (trace == null || trace.getReceived() == 0 || trace.getPainted() == 0) return -1;
+        display.record(trace.getPainted() - trace.getReceived());
+
+        ClockOffset offset = offsets.get(sourceID);
+        if (offset == null) return -1;
+        long latency = trace.getPainted() - trace.getProduced() - offset.get();
+        total.record(latency);
+        return latency;
+    }
+
+    /**
+     * Creates a report of the latency of each stage
+     *
+     * @return Report
+     */
+    public String report() {
+        return String.join("\n", dispatch.toString(), network.toString(), display.toString(), total.toString());
+    }
+
+    /**
+     * Exports the histograms of each stage to a CSV file (stage, bucket lower bound in nanoseconds, count)
+     *
+     * @param file File to write to
+     * @throws IOException Thrown if the file could not be written
+     */
+    public void export(File file) throws IOException {
+        StringBuilder b = new StringBuilder("stage,nanos,count\n");
+        dispatch.appendCSV(b);
+        network.appendCSV(b);
+        display.appendCSV(b);
+        total.appendCSV(b);
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(b.toString());
+        }
+        Log.Info("Exported latency histograms to " + file);
+    }
+
+    /**
+     * Estimate of the offset between a source's clock and ours
+     */
+    private static class ClockOffset {
+        private long offset = Long.MAX_VALUE;
+        private long windowOffset = Long.MAX_VALUE;
+        private int windowSamples = 0;
+
+        /**
+         * Updates the estimate with a received trace
+         *
+         * @param trace Trace
+         * @return Offset (sink clock - source clock, in nanoseconds)
+         */
+        synchronized long update(Trace trace) {
+            long sample = trace.getReceived() - trace.getDispatched() - trace.getRoundTrip() / 2;
+
+            // The minimum is tracked over a window, so the estimate can follow clock drift
+            windowOffset = Math.min(windowOffset, sample);
+            offset = Math.min(offset, sample);
+            if (++windowSamples >= OFFSET_WINDOW) {
+                offset = windowOffset;
+                windowOffset = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+            return offset;
+        }
+
+        synchronized long get() {
+            return offset;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package client;
+
+import shared.Notification;
+import shared.interfaces.ISinkCallbackHandler;
+import shared.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded mailbox of notifications from a source.
+ * Notifications are handed to the callback handler in order, on an executor thread, so the RMI thread that
+ * delivered the notification can return straight away.
+ * When the mailbox is full, the oldest notification is dropped.
+ * Lossless handlers (see ISinkCallbackHandler.isLossless) are called straight away on the posting thread instead,
+ * so nothing is dropped.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class Mailbox {
+
+    private final String sourceID;
+    private final ISinkCallbackHandler handler;
+    private final Executor executor;
+    private final int capacity;
+
+    private final ArrayDeque<Notification<?>> queue;
+    private final AtomicLong received = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /**
+     * Whether a drain task has been submitted to the executor (guarded by queue)
+     */
+    private boolean draining = false;
+
+    public Mailbox(String sourceID, ISinkCallbackHandler handler, Executor executor, int capacity) {
+        this.sourceID = sourceID;
+        this.handler = handler;
+        this.executor = executor;
+        this.capacity = Math.max(1, capacity);
+        this.queue = new ArrayDeque<>(this.capacity);
+    }
+
+    /**
+     * Gets the callback handler the mailbox delivers to
+     *
+     * @return Handler
+     */
+    public ISinkCallbackHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Adds a notification to the mailbox
+     *
+     * @param notification Notification
+     */
+    public void post(Notification<?> notification) {
+        received.incrementAndGet();
+        if (handler.isLossless()) {
+            deliver(notification);
+            return;
+        }
+
+        boolean startDrain;
+        synchronized (queue) {
+            if (queue.size() >= capacity) {
+                queue.poll();
+                dropped.incrementAndGet();
+                Log.Trace(String.format("Mailbox for %s full, dropped oldest notification.", sourceID));
+            }
+            queue.add(notification);
+            startDrain = !draining;
+            draining = true;
+        }
+        if (startDrain) {
+            executor.execute(this::drain);
+        }
+    }
+
+    /**
+     * Delivers notifications to the handler until the mailbox is empty
+     */
+    private void drain() {
+        while (true) {
+            Notification<?> notification;
+            synchronized (queue) {
+                notification = queue.poll();
+                if (notification == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            deliver(notification);
+        }
+    }
+
+    /**
+     * Hands a notification to the handler
+     *
+     * @param notification Notification
+     */
+    private void deliver(Notification<?> notification) {
+        try {
+            handler.notify(notification);
+        } catch (Exception ex) {
+            Log.Error(String.format("Handler for %s failed: %s", sourceID, ex.getMessage()));
+            ex.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the number of notifications waiting to be handled
+     *
+     * @return Queue depth
+     */
+    public int getDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Gets the number of notifications received
+     *
+     * @return Number of notifications
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * Gets the number of notifications dropped because the mailbox was full
+     *
+     * @return Number of notifications
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("source: %s, depth: %d/%d, received: %d, dropped: %d", sourceID, getDepth(), capacity, getReceived(), getDropped());
+    }
+}
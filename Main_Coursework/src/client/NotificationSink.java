@@ -2,25 +2,35 @@ package client;
 
 import javafx.util.Pair;
 import shared.Notification;
+import shared.SessionSettings;
+import shared.SinkCapabilities;
+import shared.Trace;
+import shared.codec.PayloadCodecs;
 import shared.exceptions.ConnectException;
 import shared.exceptions.RegisterFailException;
 import shared.interfaces.INotificationSink;
 import shared.interfaces.INotificationSource;
 import shared.interfaces.ISinkCallbackHandler;
-import shared.util.CustomRMISocketFactory;
 import shared.util.Log;
 import shared.util.RMIUtils;
 
+import java.awt.*;
+import java.io.File;
 import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
 import java.rmi.registry.Registry;
 import java.rmi.server.RMISocketFactory;
 import java.rmi.server.UnicastRemoteObject;
-import java.util.HashMap;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * A Notification Sink
@@ -34,17 +44,43 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
     protected Registry registry;
     protected INotificationSource sourceProxy;
 
-    private HashMap<String, ISinkCallbackHandler> callbackRegistry;
+    /**
+     * Map of sources (SourceID=>mailbox) that notifications are delivered to
+     */
+    private ConcurrentHashMap<String, Mailbox> callbackRegistry;
+    /**
+     * Executor that drains the mailboxes
+     */
+    private ExecutorService mailboxExecutor;
     private ConcurrentHashMap<String, INotificationSource> sources;
+    /**
+     * Map of source stubs (SourceID=>stub) from the SourceProxy's list, so sources don't need looking up
+     */
+    private volatile ConcurrentHashMap<String, INotificationSource> knownSources;
+    /**
+     * Breaks the latency of received notifications down by stage
+     */
+    private final LatencyTracer tracer = new LatencyTracer();
+    /**
+     * Map of sources (SourceID=>sequence state) tracking the last notification received, so gaps can be counted
+     * and delivery resumed after reconnecting
+     */
+    private final ConcurrentHashMap<String, SequenceState> sequences = new ConcurrentHashMap<>();
+    /**
+     * Map of sources (SourceID=>settings) of how each source delivers to us, for sources that negotiated
+     */
+    private final ConcurrentHashMap<String, SessionSettings> settings = new ConcurrentHashMap<>();
 
     public NotificationSink() throws RemoteException {
         super();
         Runtime.getRuntime().addShutdownHook(new ShutdownHandler());
         sources = new ConcurrentHashMap<>();
-        callbackRegistry = new HashMap<>();
+        knownSources = new ConcurrentHashMap<>();
+        callbackRegistry = new ConcurrentHashMap<>();
+        mailboxExecutor = Executors.newFixedThreadPool(Config.getMailboxThreads(), new MailboxThreadFactory());
 
         try {
-            RMISocketFactory.setSocketFactory(new CustomRMISocketFactory());
+            RMISocketFactory.setSocketFactory(Config.getSocketFactory());
         } catch (IOException e) {
             Log.Warn("Failed to add custom RMI Socket Factory...");
         }
@@ -84,12 +120,12 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
 
             // If the callback has been provided, combine the Log statement and callback into one callback and store it for later
             if(callbackHandler != null) {
-                this.callbackRegistry.put("SourceProxy", (e) -> {
+                this.callbackRegistry.put("SourceProxy", createMailbox("SourceProxy", (e) -> {
                     Log.Info("Received list of sources (" + ((List<Pair<String, INotificationSource>>) e.getData()).size() + ")");
                     callbackHandler.notify(e);
-                });
+                }));
             } else {
-                this.callbackRegistry.put("SourceProxy", (e) -> Log.Info("Received list of sources (" + ((List<Pair<String, INotificationSource>>) e.getData()).size() + ")"));
+                this.callbackRegistry.put("SourceProxy", createMailbox("SourceProxy", (e) -> Log.Info("Received list of sources (" + ((List<Pair<String, INotificationSource>>) e.getData()).size() + ")")));
             }
 
             if(Config.getClientID() == null) {
@@ -138,29 +174,323 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
      * @throws ConnectException
      */
     public void connectSource(String sourceID, ISinkCallbackHandler handler) throws ConnectException {
+        connectSource(sourceID, handler, null);
+    }
+
+    /**
+     * Connects this sink to a source
+     *
+     * @param sourceID Source to connect to
+     * @param handler  A runnable to be run when the sink is notified of notifications
+     * @param viewport Size of the area notifications are displayed in (null if unknown)
+     * @throws ConnectException
+     */
+    public void connectSource(String sourceID, ISinkCallbackHandler handler, Dimension viewport) throws ConnectException {
+        connectSource(sourceID, handler, viewport, null);
+    }
+
+    /**
+     * Connects this sink to a source
+     *
+     * @param sourceID Source to connect to
+     * @param handler  A runnable to be run when the sink is notified of notifications
+     * @param viewport Size of the area notifications are displayed in (null if unknown)
+     * @param variant  Variant of the source to subscribe to (null for the default)
+     * @throws ConnectException
+     */
+    public void connectSource(String sourceID, ISinkCallbackHandler handler, Dimension viewport, String variant) throws ConnectException {
         if (!isConnectedRMI()) {
             throw new ConnectException("Not connected to remote server.");
         }
 
         try {
-            INotificationSource source = (INotificationSource) registry.lookup(sourceID);
-            if(Config.getClientID() == null) {
-                UUID sinkID = source.register(this);
-                Config.setClientID(sinkID);
-            } else {
-                source.register(Config.getClientID(), this);
+            // Store the handler first, as the source may send the current state as soon as we register
+            if (handler != null) this.callbackRegistry.put(sourceID, createMailbox(sourceID, handler));
+
+            // Use the stub from the SourceProxy's list if we have one, saving a registry lookup
+            INotificationSource source = this.knownSources.get(sourceID);
+            if (source != null) {
+                try {
+                    register(sourceID, source, viewport, variant);
+                } catch (RemoteException ex) {
+                    // Stub is stale (e.g. the source restarted), so look it up again
+                    Log.Warn(String.format("Failed to register with '%s' using SourceProxy's stub, looking it up...", sourceID));
+                    this.knownSources.remove(sourceID, source);
+                    source = null;
+                }
+            }
+            if (source == null) {
+                source = (INotificationSource) registry.lookup(sourceID);
+                register(sourceID, source, viewport, variant);
             }
             Log.Info(String.format("Registered with '%s'!", sourceID));
 
             this.sources.put(sourceID, source);
-            if (handler != null) this.callbackRegistry.put(sourceID, handler);
         } catch (NotBoundException ex) {
+            this.callbackRegistry.remove(sourceID);
             throw new ConnectException(String.format("Failed to register with '%s' - source could not be found.", sourceID), ex);
         } catch (RemoteException | RegisterFailException ex) {
+            this.callbackRegistry.remove(sourceID);
             throw new ConnectException(String.format("Failed to register with '%s'.", sourceID), ex);
         }
     }
 
+    /**
+     * Registers this sink with a source.
+     * If we have received from the source before, delivery resumes after the last notification received.
+     * Older sources that lack some of the calls used are registered the old way.
+     *
+     * @param sourceID Source to register with
+     * @param source   Source stub
+     * @param viewport Size of the area notifications are displayed in (null if unknown)
+     * @param variant  Variant of the source to subscribe to (null for the default)
+     * @throws RemoteException
+     * @throws RegisterFailException
+     */
+    private void register(String sourceID, INotificationSource source, Dimension viewport, String variant) throws RemoteException, RegisterFailException {
+        if (Config.getClientID() == null) {
+            // Sources may be connected to in parallel, so make sure only one of them assigns our ID
+            synchronized (this) {
+                if (Config.getClientID() == null) {
+                    UUID sinkID = negotiate(sourceID, source, null, viewport);
+                    Config.setClientID(sinkID);
+                    if (variant != null) setVariant(sourceID, source, sinkID, variant);
+                    return;
+                }
+            }
+        }
+
+        if (variant != null) setVariant(sourceID, source, Config.getClientID(), variant);
+        if (getLastSequence(sourceID) != 0) {
+            if (viewport != null) setViewport(sourceID, source, Config.getClientID(), viewport);
+            resume(sourceID, source);
+        } else {
+            negotiate(sourceID, source, Config.getClientID(), viewport);
+        }
+    }
+
+    /**
+     * Subscribes to a variant of a source. Sources that don't have variants send the default.
+     *
+     * @param sourceID Source
+     * @param source   Source stub
+     * @param sinkID   ID we are registered under
+     * @param variant  Variant to subscribe to
+     * @throws RemoteException
+     */
+    private void setVariant(String sourceID, INotificationSource source, UUID sinkID, String variant) throws RemoteException {
+        try {
+            source.setVariant(sinkID, variant);
+        } catch (UnmarshalException | ServerException ex) {
+            if (!isUnsupported(ex)) throw ex;
+            Log.Warn(String.format("'%s' doesn't have variants, receiving the default instead of '%s'.", sourceID, variant));
+        }
+    }
+
+    /**
+     * Tells a source the size of the area its notifications are displayed in. Sources that can't adapt to it are
+     * left sending full size notifications.
+     *
+     * @param sourceID Source
+     * @param source   Source stub
+     * @param sinkID   ID we are registered under
+     * @param viewport Viewport size
+     * @throws RemoteException
+     */
+    private void setViewport(String sourceID, INotificationSource source, UUID sinkID, Dimension viewport) throws RemoteException {
+        try {
+            source.setViewport(sinkID, viewport);
+        } catch (UnmarshalException | ServerException ex) {
+            if (!isUnsupported(ex)) throw ex;
+            Log.Info(String.format("'%s' can't adapt to our viewport.", sourceID));
+        }
+    }
+
+    /**
+     * Returns whether a call failed because the source is older than us, so doesn't know the method (or its
+     * arguments' classes)
+     *
+     * @param ex Exception the call failed with
+     * @return True if the source doesn't support the call
+     */
+    private static boolean isUnsupported(RemoteException ex) {
+        return ex instanceof UnmarshalException || (ex instanceof ServerException && ex.getCause() instanceof UnmarshalException);
+    }
+
+    /**
+     * Registers this sink with a source, telling it what we support so it can pick the cheapest way to deliver to us.
+     * Sources that can't negotiate are registered with the old way.
+     *
+     * @param sourceID Source to register with
+     * @param source   Source stub
+     * @param sinkID   ID to register under (null to have one assigned)
+     * @param viewport Size of the area notifications are displayed in (null if unknown)
+     * @return ID we are registered under
+     * @throws RemoteException
+     * @throws RegisterFailException
+     */
+    private UUID negotiate(String sourceID, INotificationSource source, UUID sinkID, Dimension viewport) throws RemoteException, RegisterFailException {
+        // Handlers that need every notification (e.g. recorders) mustn't have frames thinned out
+        Mailbox mailbox = callbackRegistry.get(sourceID);
+        boolean lossless = mailbox != null && mailbox.getHandler().isLossless();
+        SinkCapabilities capabilities = new SinkCapabilities(PayloadCodecs.getIDs(), lossless ? 0 : Config.getMaxFrameRate(), viewport, true, lossless);
+        try {
+            SessionSettings settings = source.register(sinkID, this, capabilities);
+            this.settings.put(sourceID, settings);
+            Log.Info(String.format("Negotiated with '%s': %s", sourceID, settings));
+            return settings.getSinkID();
+        } catch (UnmarshalException | ServerException ex) {
+            if (!isUnsupported(ex)) throw ex;
+            Log.Info(String.format("'%s' can't negotiate, registering without capabilities.", sourceID));
+        }
+
+        if (sinkID == null) {
+            sinkID = source.register(this);
+        } else {
+            source.register(sinkID, this);
+        }
+        if (viewport != null) setViewport(sourceID, source, sinkID, viewport);
+        return sinkID;
+    }
+
+    /**
+     * Re-registers with a source, resuming delivery after the last notification received.
+     * If the source started a new session instead (e.g. it restarted, so its sequence numbers have too), the sequence
+     * numbers received from it are forgotten. Sources that can't resume are registered with again, as a new session.
+     *
+     * @param sourceID Source to resume
+     * @param source   Source stub
+     * @return True if the session was resumed, false if a new one was started
+     * @throws RemoteException
+     * @throws RegisterFailException
+     */
+    private boolean resume(String sourceID, INotificationSource source) throws RemoteException, RegisterFailException {
+        SequenceState state = sequences.computeIfAbsent(sourceID, k -> new SequenceState());
+        long lastSequence = state.beginResume();
+        // If the call fails, carry on discarding what we've already had
+        long resumedAfter = lastSequence;
+        boolean supported = true;
+        try {
+            resumedAfter = source.resume(Config.getClientID(), this, lastSequence);
+        } catch (UnmarshalException | ServerException ex) {
+            if (!isUnsupported(ex)) throw ex;
+            supported = false;
+            resumedAfter = 0;
+        } finally {
+            state.endResume(resumedAfter);
+        }
+
+        // If we'd received nothing, a resumed session can't be told from a new one, so it's treated as new
+        if (!supported) {
+            Log.Info(String.format("'%s' can't resume, registering again.", sourceID));
+        } else if (resumedAfter == lastSequence && lastSequence != 0) {
+            Log.Info(String.format("Resumed '%s' after #%d.", sourceID, lastSequence));
+            return true;
+        } else {
+            Log.Info(String.format("'%s' started a new session.", sourceID));
+        }
+        // A new session has the settings of a sink that didn't negotiate (if it has one at all), so negotiate again
+        negotiate(sourceID, source, Config.getClientID(), null);
+        return false;
+    }
+
+    /**
+     * Gets the settings negotiated with a source
+     *
+     * @param sourceID Source
+     * @return Settings, null if the source didn't negotiate
+     */
+    public SessionSettings getSettings(String sourceID) {
+        return settings.get(sourceID);
+    }
+
+    /**
+     * Re-registers with a source we are connected to (e.g. after a network failure), resuming delivery after the
+     * last notification received. The viewport and variant are kept.
+     *
+     * @param sourceID Source to resume
+     * @throws ConnectException Thrown if the source could not be reached
+     */
+    public void resumeSource(String sourceID) throws ConnectException {
+        INotificationSource source = this.sources.get(sourceID);
+        if (source == null) {
+            throw new ConnectException(String.format("Not connected to '%s'.", sourceID));
+        }
+        try {
+            try {
+                resume(sourceID, source);
+            } catch (RemoteException ex) {
+                // Stub is stale (e.g. the source restarted), so look it up again
+                source = (INotificationSource) registry.lookup(sourceID);
+                resume(sourceID, source);
+                this.sources.put(sourceID, source);
+            }
+        } catch (NotBoundException ex) {
+            throw new ConnectException(String.format("Failed to resume '%s' - source could not be found.", sourceID), ex);
+        } catch (RemoteException | RegisterFailException ex) {
+            throw new ConnectException(String.format("Failed to resume '%s'.", sourceID), ex);
+        }
+    }
+
+    /**
+     * Gets the sequence number of the last notification received from a source
+     *
+     * @param sourceID Source
+     * @return Sequence number, 0 if nothing has been received
+     */
+    public long getLastSequence(String sourceID) {
+        SequenceState state = this.sequences.get(sourceID);
+        return (state == null) ? 0 : state.getLast();
+    }
+
+    /**
+     * Gets the number of notifications from a source that never arrived (gaps in the sequence numbers, which include
+     * frames the source skipped to keep to the negotiated frame rate or to catch up)
+     *
+     * @param sourceID Source
+     * @return Number of notifications
+     */
+    public long getMissed(String sourceID) {
+        SequenceState state = this.sequences.get(sourceID);
+        return (state == null) ? 0 : state.getMissed();
+    }
+
+    /**
+     * Tells a source the size of the area its notifications are displayed in
+     *
+     * @param sourceID Source to update
+     * @param viewport Viewport size
+     */
+    public void setViewport(String sourceID, Dimension viewport) {
+        INotificationSource source = this.sources.get(sourceID);
+        if (source == null) {
+            return;
+        }
+        try {
+            source.setViewport(Config.getClientID(), viewport);
+        } catch (RemoteException e) {
+            Log.Warn(String.format("Failed to update viewport for '%s': %s", sourceID, e.getMessage()));
+        }
+    }
+
+    /**
+     * Asks a source to pause/resume delivery to this sink (e.g. when the source's window is hidden)
+     *
+     * @param sourceID Source
+     * @param paused   True to pause delivery, false to resume it
+     */
+    public void setPaused(String sourceID, boolean paused) {
+        INotificationSource source = this.sources.get(sourceID);
+        if (source == null) {
+            return;
+        }
+        try {
+            source.setPaused(Config.getClientID(), paused);
+        } catch (RemoteException e) {
+            Log.Warn(String.format("Failed to %s '%s': %s", paused ? "pause" : "resume", sourceID, e.getMessage()));
+        }
+    }
+
     /**
      * Disconnects this sink from a specified source
      * @param sourceID Source to disconnect from
@@ -175,7 +505,11 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
             // Unregister so the source knows we don't want notifications anymore
             source.unRegister(Config.getClientID());
             sources.remove(sourceID);
-            callbackRegistry.remove(sourceID);
+            settings.remove(sourceID);
+            SequenceState state = sequences.remove(sourceID);
+            if (state != null) Log.Debug(String.format("%s: %s", sourceID, state));
+            Mailbox mailbox = callbackRegistry.remove(sourceID);
+            if (mailbox != null) Log.Debug(mailbox.toString());
 
             Log.Info(String.format("Disconnected from '%s'.", sourceID));
         } catch (RemoteException e) {
@@ -203,6 +537,7 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
             Log.Info("Disconnecting from RMI registry (Source Proxy)...");
             sourceProxy.unRegister(Config.getClientID());
             Log.Info("Disconnected from RMI registry (Source Proxy)!");
+            knownSources = new ConcurrentHashMap<>();
         } catch (RemoteException e) {
             Log.Error("Failed to unregister from SourceProxy: " + e.getMessage());
         }
@@ -236,20 +571,157 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
     }
 
     /**
-     * Notifies a Sink
+     * Notifies a Sink.
+     * The notification is posted to the source's mailbox, and this returns straight away.
      *
      * @param notification Notification
      * @throws RemoteException
      */
     @Override
-    public void notify(Notification notification) throws RemoteException {
+    @SuppressWarnings("unchecked")
+    public void notify(Notification<?> notification) throws RemoteException {
+        Trace trace = notification.getTrace();
+        if (trace != null) {
+            trace.receive();
+            tracer.received(notification.getSource(), trace);
+        }
+
+        // Keep the source stubs from the SourceProxy's list, so they're available before the mailbox is drained
+        if (notification.getSource().equals("SourceProxy") && notification.getData() instanceof List) {
+            updateKnownSources((List<Pair<String, INotificationSource>>) notification.getData());
+        }
+
+        // Discard notifications we've already had (e.g. resent after a failure)
+        if (notification.getSequence() != 0) {
+            SequenceState state = sequences.computeIfAbsent(notification.getSource(), k -> new SequenceState());
+            if (!state.accept(notification.getSequence())) {
+                Log.Trace(String.format("Discarded stale notification #%d from %s", notification.getSequence(), notification.getSource()));
+                return;
+            }
+        }
+
         if (!callbackRegistry.containsKey(notification.getSource())) {
             Log.Warn(String.format("No handler registered for %s. Logging to console.", notification.getSource()));
             Log.Info(notification.toString());
             return;
         }
-        ISinkCallbackHandler callback = callbackRegistry.get(notification.getSource());
-        callback.notify(notification);
+        Mailbox mailbox = callbackRegistry.get(notification.getSource());
+        mailbox.post(notification);
+    }
+
+    /**
+     * Replaces the known source stubs with those from a SourceProxy list
+     *
+     * @param sourceList List of (SourceID, stub) pairs
+     */
+    private void updateKnownSources(List<Pair<String, INotificationSource>> sourceList) {
+        ConcurrentHashMap<String, INotificationSource> knownSources = new ConcurrentHashMap<>();
+        sourceList.stream()
+                .filter(p -> p.getKey() != null && p.getValue() != null)
+                .forEach(p -> knownSources.put(p.getKey(), p.getValue()));
+        this.knownSources = knownSources;
+    }
+
+    /**
+     * Creates a mailbox for a source
+     *
+     * @param sourceID Source the mailbox is for
+     * @param handler  Handler to deliver notifications to
+     * @return Mailbox
+     */
+    private Mailbox createMailbox(String sourceID, ISinkCallbackHandler handler) {
+        return new Mailbox(sourceID, handler, mailboxExecutor, Config.getMailboxSize());
+    }
+
+    /**
+     * Gets the mailbox for a source (for queue depth/drop statistics)
+     *
+     * @param sourceID Source
+     * @return Mailbox, or null if not connected to the source
+     */
+    public Mailbox getMailbox(String sourceID) {
+        return callbackRegistry.get(sourceID);
+    }
+
+    /**
+     * Gets the tracer that breaks the latency of received notifications down by stage
+     *
+     * @return Latency tracer
+     */
+    public LatencyTracer getTracer() {
+        return tracer;
+    }
+
+    /**
+     * Tracks the sequence numbers received from a source
+     */
+    private static class SequenceState {
+        private long last = 0;
+        private long missed = 0;
+        private long stale = 0;
+
+        /**
+         * Records a received sequence number
+         *
+         * @param sequence Sequence number
+         * @return False if the notification is older than (or the same as) one already received
+         */
+        synchronized boolean accept(long sequence) {
+            if (sequence <= last) {
+                stale++;
+                return false;
+            }
+            if (last != 0) missed += sequence - last - 1;
+            last = sequence;
+            return true;
+        }
+
+        /**
+         * Starts resuming the source. Until the source replies, every notification is accepted, as a source that
+         * starts a new session numbers its notifications from the start again.
+         *
+         * @return Sequence number of the last notification received, to resume after
+         */
+        synchronized long beginResume() {
+            long previous = last;
+            last = 0;
+            return previous;
+        }
+
+        /**
+         * Finishes resuming the source
+         *
+         * @param resumedAfter Sequence number the source resumed delivery after (0 if it started a new session)
+         */
+        synchronized void endResume(long resumedAfter) {
+            last = Math.max(last, resumedAfter);
+        }
+
+        synchronized long getLast() {
+            return last;
+        }
+
+        synchronized long getMissed() {
+            return missed;
+        }
+
+        @Override
+        public synchronized String toString() {
+            return String.format("last: #%d, missed: %d, stale: %d", last, missed, stale);
+        }
+    }
+
+    /**
+     * Creates daemon threads for draining mailboxes
+     */
+    private static class MailboxThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "Mailbox-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
     }
 
     /**
@@ -270,6 +742,15 @@ public class NotificationSink extends UnicastRemoteObject implements INotificati
             if (isConnectedRMIProxy()) {
                 disconnectRMIProxy();
             }
+
+            Log.Debug("Latency:\n" + tracer.report());
+            if (Config.getTraceFile() != null) {
+                try {
+                    tracer.export(new File(Config.getTraceFile()));
+                } catch (IOException e) {
+                    Log.Warn("Failed to export latency histograms: " + e.getMessage());
+                }
+            }
         }
     }
 }
@@ -0,0 +1,99 @@
+package client;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics shared by many sinks: throughput, delivery latency percentiles, and gaps in delivery.
+ * Latencies are recorded in a histogram of 1ms buckets, so recording is lock free and percentiles are cheap.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SinkStats {
+
+    /**
+     * Latencies above this (in milliseconds) are recorded in the last bucket
+     */
+    private static final int MAX_LATENCY = 10000;
+
+    private final LongAdder frames = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder gaps = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(MAX_LATENCY + 1);
+
+    private long lastReport = System.nanoTime();
+    private long lastFrames = 0;
+    private long lastBytes = 0;
+
+    /**
+     * Records a received frame
+     *
+     * @param size    Size of the frame (in bytes)
+     * @param latency Time from the source sending the frame to it being received (in milliseconds)
+     */
+    public void received(int size, long latency) {
+        frames.increment();
+        bytes.add(size);
+        latencies.incrementAndGet((int) Math.max(0, Math.min(MAX_LATENCY, latency)));
+    }
+
+    /**
+     * Records a gap in delivery
+     */
+    public void gap() {
+        gaps.increment();
+    }
+
+    /**
+     * Records a frame that could not be processed
+     */
+    public void error() {
+        errors.increment();
+    }
+
+    /**
+     * Gets a latency percentile
+     *
+     * @param percentile Percentile (0-100)
+     * @return Latency (in milliseconds), or -1 if nothing has been received
+     */
+    public long getLatencyPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i <= MAX_LATENCY; i++) {
+            total += latencies.get(i);
+        }
+        if (total == 0) return -1;
+
+        long rank = (long) Math.ceil(percentile / 100d * total);
+        long count = 0;
+        for (int i = 0; i <= MAX_LATENCY; i++) {
+            count += latencies.get(i);
+            if (count >= Math.max(1, rank)) return i;
+        }
+        return MAX_LATENCY;
+    }
+
+    /**
+     * Creates a report of the statistics since the last report (throughput) and since the start (latency, gaps)
+     *
+     * @return Report
+     */
+    public synchronized String report() {
+        long now = System.nanoTime();
+        long frames = this.frames.sum();
+        long bytes = this.bytes.sum();
+        double seconds = Math.max(1e-9, (now - lastReport) / 1e9);
+
+        String report = String.format("%.1f frames/s, %.2f MB/s, latency p50: %dms, p90: %dms, p99: %dms, max: %dms, frames: %d, gaps: %d, errors: %d",
+                (frames - lastFrames) / seconds, (bytes - lastBytes) / seconds / (1024 * 1024),
+                getLatencyPercentile(50), getLatencyPercentile(90), getLatencyPercentile(99), getLatencyPercentile(100),
+                frames, gaps.sum(), errors.sum());
+
+        lastReport = now;
+        lastFrames = frames;
+        lastBytes = bytes;
+        return report;
+    }
+}
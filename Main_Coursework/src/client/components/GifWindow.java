@@ -1,12 +1,25 @@
 package client.components;
 
+import client.Config;
 import client.GifClient;
+import client.JitterBuffer;
+import client.Mailbox;
+import shared.Trace;
+import shared.util.ImagePool;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Window for displaying Images (or Gifs)
@@ -17,8 +30,43 @@ import java.awt.image.BufferedImage;
 public class GifWindow extends JFrame implements AutoCloseable {
 
     ImagePanel imagePanel;
+
+    /**
+     * Pool of images frames are decoded into
+     */
+    ImagePool imagePool;
+
+    /**
+     * Buffer that smooths out when frames are displayed
+     */
+    JitterBuffer jitterBuffer;
+
+    /**
+     * Performance overlay, toggled with F3
+     */
+    PerformanceHud hud;
+
+    /**
+     * Traces of the frames waiting to be painted, by source time
+     */
+    ConcurrentSkipListMap<Long, Trace> traces = new ConcurrentSkipListMap<>();
     String sourceID;
 
+    /**
+     * Timer to wait for resizing to finish before telling the source about the new viewport
+     */
+    Timer resizeTimer;
+
+    /**
+     * Whether the window is showing the stream (not hidden or minimised)
+     */
+    volatile boolean streamVisible = true;
+
+    /**
+     * Sends viewport and pause updates to the source off the EDT, one at a time in the order they were made
+     */
+    ExecutorService sourceUpdates;
+
     public GifWindow(String sourceID) {
         super(sourceID);
 
@@ -27,18 +75,178 @@ public class GifWindow extends JFrame implements AutoCloseable {
         this.setMinimumSize(new Dimension(400, 300));
         this.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
         this.addWindowListener(new WindowHandler());
+        sourceUpdates = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "SourceUpdateThread");
+            t.setDaemon(true);
+            return t;
+        });
 
         imagePanel = new ImagePanel();
+        imagePool = new ImagePool(2);
+        imagePanel.setImagePool(imagePool);
+        jitterBuffer = new JitterBuffer(sourceID, (image, sourceTime) -> imagePanel.offerImage(image, sourceTime), imagePool, Config.getPlayoutDelay());
         this.setContentPane(imagePanel);
+
+        hud = new PerformanceHud(Config.isShowHud());
+        hud.setDroppedCounter(this::getDroppedFrames);
+        imagePanel.setHud(hud);
+        imagePanel.setPaintListener(this::framePainted);
+        imagePanel.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "toggleHud");
+        imagePanel.getActionMap().put("toggleHud", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                hud.setVisible(!hud.isVisible());
+                imagePanel.repaint();
+            }
+        });
+
+        resizeTimer = new Timer(250, e -> {
+            Dimension viewport = getViewport();
+            updateSource(() -> GifClient.getSink().setViewport(sourceID, viewport));
+        });
+        resizeTimer.setRepeats(false);
+        imagePanel.addComponentListener(new ResizeHandler());
+        this.addComponentListener(new VisibilityHandler());
+    }
+
+    /**
+     * Gets the size of the area images are displayed in
+     *
+     * @return Viewport size
+     */
+    public Dimension getViewport() {
+        Dimension size = imagePanel.getSize();
+        if (size.width == 0 || size.height == 0) {
+            return this.getMinimumSize();
+        }
+        return size;
+    }
+
+    /**
+     * Gets the pool that images displayed in this window should be decoded into
+     *
+     * @return Image pool
+     */
+    public ImagePool getImagePool() {
+        return imagePool;
+    }
+
+    /**
+     * Gets the performance HUD for the window
+     *
+     * @return Performance HUD
+     */
+    public PerformanceHud getHud() {
+        return hud;
+    }
+
+    /**
+     * Gets the number of frames dropped between the sink and the screen
+     *
+     * @return Number of frames dropped by the mailbox, jitter buffer, and panel
+     */
+    private long getDroppedFrames() {
+        long dropped = imagePanel.getReplacedImages() + jitterBuffer.getLateDrops();
+        Mailbox mailbox = GifClient.getSink().getMailbox(sourceID);
+        if (mailbox != null) dropped += mailbox.getDropped();
+        return dropped;
+    }
+
+    /**
+     * Returns whether the window is showing the stream; frames for a hidden window don't need decoding
+     *
+     * @return True if the stream is visible
+     */
+    public boolean isStreamVisible() {
+        return streamVisible;
+    }
+
+    /**
+     * Updates whether the stream is visible, and asks the source to pause/resume delivery to match
+     *
+     * @param visible True if the stream is visible
+     */
+    private void setStreamVisible(boolean visible) {
+        if (streamVisible == visible) return;
+        streamVisible = visible;
+        // Send the latest state when the update runs, so quick changes end on the right one
+        updateSource(() -> GifClient.getSink().setPaused(sourceID, !streamVisible));
     }
 
     /**
-     * Displays an image in the window
+     * Queues an update to send to the source
+     *
+     * @param update Update
+     */
+    private void updateSource(Runnable update) {
+        try {
+            sourceUpdates.execute(update);
+        } catch (RejectedExecutionException e) {
+            // The window has been disposed, so the source has been disconnected
+        }
+    }
+
+    /**
+     * Displays an image in the window.
+     * Can be called from any thread; if the window has not painted the previous image yet, it is replaced.
      *
      * @param image
      */
     public void displayImage(BufferedImage image) {
-        SwingUtilities.invokeLater(() -> imagePanel.setImage(image, true));
+        imagePanel.offerImage(image);
+    }
+
+    /**
+     * Displays an image in the window on the source's schedule, via the jitter buffer
+     *
+     * @param image      Image
+     * @param sourceTime Time the source sent the image
+     */
+    public void displayImage(BufferedImage image, long sourceTime) {
+        jitterBuffer.offer(sourceTime, image);
+    }
+
+    /**
+     * Displays an image in the window on the source's schedule, via the jitter buffer, tracing when it is painted
+     *
+     * @param image      Image
+     * @param sourceTime Time the source sent the image
+     * @param trace      Trace of the notification the image came from (may be null)
+     */
+    public void displayImage(BufferedImage image, long sourceTime, Trace trace) {
+        if (trace != null) traces.put(sourceTime, trace);
+        displayImage(image, sourceTime);
+    }
+
+    /**
+     * Records a painted frame's trace, and its latency on the HUD; traces of older frames (that were dropped) are
+     * discarded
+     *
+     * @param sourceTime Time the source sent the frame
+     */
+    private void framePainted(long sourceTime) {
+        Trace trace = traces.get(sourceTime);
+        traces.headMap(sourceTime, true).clear();
+        if (trace == null) return;
+        trace.paint();
+        long latency = GifClient.getSink().getTracer().painted(sourceID, trace);
+        if (latency >= 0) hud.frameLatency(latency);
+    }
+
+    /**
+     * Gets the jitter buffer for the window
+     *
+     * @return Jitter buffer
+     */
+    public JitterBuffer getJitterBuffer() {
+        return jitterBuffer;
+    }
+
+    @Override
+    public void dispose() {
+        jitterBuffer.close();
+        sourceUpdates.shutdown();
+        super.dispose();
     }
 
     @Override
@@ -47,9 +255,44 @@ public class GifWindow extends JFrame implements AutoCloseable {
     }
 
     /**
-     * Handler to unregister from source when window closed
+     * Handler to update the source's rendition when the window is resized
+     */
+    private class ResizeHandler extends ComponentAdapter {
+        @Override
+        public void componentResized(ComponentEvent e) {
+            resizeTimer.restart();
+        }
+    }
+
+    /**
+     * Handler to pause the stream when the window is hidden
+     */
+    private class VisibilityHandler extends ComponentAdapter {
+        @Override
+        public void componentShown(ComponentEvent e) {
+            setStreamVisible(true);
+        }
+
+        @Override
+        public void componentHidden(ComponentEvent e) {
+            setStreamVisible(false);
+        }
+    }
+
+    /**
+     * Handler to unregister from source when window closed, and to pause the stream when the window is minimised
      */
     private class WindowHandler extends WindowAdapter {
+        @Override
+        public void windowIconified(WindowEvent e) {
+            setStreamVisible(false);
+        }
+
+        @Override
+        public void windowDeiconified(WindowEvent e) {
+            setStreamVisible(true);
+        }
+
         /**
          * Invoked when a window is in the process of being closed.
          * The close operation can be overridden at this point.
@@ -1,10 +1,18 @@
 package client.components;
 
+import shared.util.ImagePool;
 import shared.util.ImageUtils;
+import shared.util.Log;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongConsumer;
 
 /**
  * Loads image into JPanel
@@ -14,10 +22,66 @@ import java.awt.image.BufferedImage;
  */
 public class ImagePanel extends JPanel implements SwingConstants {
 
+    /**
+     * Threads that scale offered images to fit their panels, so the EDT only has to draw them
+     */
+    private static final ExecutorService scaler = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors() / 2), r -> {
+        Thread t = new Thread(r, "ScaleThread");
+        t.setDaemon(true);
+        return t;
+    });
+
     private BufferedImage image;
 
+    /**
+     * Latest image offered from another thread (with its source time), waiting to be scaled
+     */
+    private final AtomicReference<PendingImage> offeredImage = new AtomicReference<>();
+
+    /**
+     * Latest scaled image, picked up on the next paint
+     */
+    private final AtomicReference<PendingImage> pendingImage = new AtomicReference<>();
+    private final AtomicLong replacedImages = new AtomicLong(0);
+
+    /**
+     * Set whilst a scaling task is queued or running for the panel
+     */
+    private final AtomicBoolean scaling = new AtomicBoolean(false);
+
+    /**
+     * Size of the panel when it was last painted, which offered images are scaled to fit (null before the first paint)
+     */
+    private volatile Dimension panelSize;
+
+    /**
+     * Source time of the image on screen (0 if unknown)
+     */
+    private long sourceTime = 0;
+
+    /**
+     * Performance HUD drawn over the image (may be null)
+     */
+    private PerformanceHud hud;
+
+    /**
+     * Called with the source time of each new image, once it has been painted (may be null)
+     */
+    private LongConsumer paintListener;
+
+    /**
+     * Pool that offered images are returned to once they have been replaced
+     */
+    private ImagePool imagePool;
+
     private int verticalAlignment = CENTER;
-    private int horizontalAlignment = LEADING;
+    private int horizontalAlignment = CENTER;
+
+    /**
+     * The image on screen scaled to fit the panel (null if it didn't need scaling), and the images it's scaled into
+     */
+    private BufferedImage scaledImage;
+    private final ImagePool scaledPool = new ImagePool(2);
 
     public ImagePanel() {
         this.setBackground(Color.WHITE);
@@ -159,12 +223,143 @@ public class ImagePanel extends JPanel implements SwingConstants {
     }
 
     public void setImage(BufferedImage image, boolean repaint) {
+        // The scaled image belongs to the image being replaced
+        if (image != this.image) {
+            scaledPool.release(scaledImage);
+            scaledImage = null;
+        }
         this.image = image;
         if(image == null) return;
         this.setPreferredSize(new Dimension(image.getWidth(), image.getHeight()));
         if (repaint) this.repaint();
     }
 
+    /**
+     * Sets the pool that offered images came from. Images are released back to it once they have been
+     * replaced on screen (or replaced before they were painted).
+     *
+     * @param imagePool Image pool
+     */
+    public void setImagePool(ImagePool imagePool) {
+        this.imagePool = imagePool;
+    }
+
+    /**
+     * Sets the performance HUD to draw over the image, and to record paints in
+     *
+     * @param hud Performance HUD
+     */
+    public void setHud(PerformanceHud hud) {
+        this.hud = hud;
+    }
+
+    /**
+     * Sets the listener called with the source time of each new image, once it has been painted
+     *
+     * @param paintListener Listener
+     */
+    public void setPaintListener(LongConsumer paintListener) {
+        this.paintListener = paintListener;
+    }
+
+    /**
+     * Offers an image to be displayed on the next paint. Safe to call from any thread.
+     * If an image is already waiting to be painted, it is replaced, so the panel always shows the latest image.
+     *
+     * @param image Image to display
+     */
+    public void offerImage(BufferedImage image) {
+        offerImage(image, 0);
+    }
+
+    /**
+     * Offers an image to be displayed on the next paint. Safe to call from any thread.
+     * The image is scaled to fit the panel on a scaling thread, then painted. If an image is already waiting to be
+     * scaled or painted, it is replaced, so the panel always shows the latest image.
+     *
+     * @param image      Image to display
+     * @param sourceTime Time the source sent the image (0 if unknown), for tracing when it is painted
+     */
+    public void offerImage(BufferedImage image, long sourceTime) {
+        if (image == null) return;
+        discard(offeredImage.getAndSet(new PendingImage(image, sourceTime, null)));
+        if (scaling.compareAndSet(false, true)) {
+            scaler.execute(this::scaleOffered);
+        }
+    }
+
+    /**
+     * Scales the offered images to fit the panel, and hands them to the EDT to paint.
+     * Only one of these runs at a time for a panel.
+     */
+    private void scaleOffered() {
+        do {
+            PendingImage offered;
+            while ((offered = offeredImage.getAndSet(null)) != null) {
+                BufferedImage scaled = null;
+                try {
+                    scaled = scale(offered.image);
+                } catch (RuntimeException e) {
+                    // paintComponent scales it as it's drawn instead
+                    Log.Error("Failed to scale image: " + e.getMessage());
+                }
+                discard(pendingImage.getAndSet(new PendingImage(offered.image, offered.sourceTime, scaled)));
+                // Repaints are coalesced, so only one paint happens however many images are scaled
+                this.repaint();
+            }
+            scaling.set(false);
+        } while (offeredImage.get() != null && scaling.compareAndSet(false, true));
+    }
+
+    /**
+     * Scales an image to fit the panel, keeping its aspect ratio
+     *
+     * @param image Image
+     * @return Scaled image (null if the image is already the right size, or the panel hasn't been painted yet)
+     */
+    private BufferedImage scale(BufferedImage image) {
+        Dimension panel = panelSize;
+        if (panel == null) return null;
+        Dimension size = getFittedSize(image, panel.width, panel.height);
+        if (size.width == image.getWidth() && size.height == image.getHeight()) return null;
+        // Scaled in steps, so large reductions don't alias
+        return ImageUtils.scaleImage(image, scaledPool.acquire(size.width, size.height));
+    }
+
+    /**
+     * Releases the images of an offered image that was replaced before it was painted
+     *
+     * @param replaced Replaced image (may be null)
+     */
+    private void discard(PendingImage replaced) {
+        if (replaced == null) return;
+        replacedImages.incrementAndGet();
+        if (imagePool != null) imagePool.release(replaced.image);
+        scaledPool.release(replaced.scaled);
+    }
+
+    /**
+     * Gets the size an image is drawn at to fit a panel, keeping its aspect ratio
+     *
+     * @param image  Image
+     * @param width  Panel width
+     * @param height Panel height
+     * @return Size
+     */
+    private static Dimension getFittedSize(BufferedImage image, int width, int height) {
+        double scale = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
+        return new Dimension(Math.max(1, (int) (scale * image.getWidth())), Math.max(1, (int) (scale * image.getHeight())));
+    }
+
+    /**
+     * Gets the number of offered images that were replaced before they were painted
+     *
+     * @return Number of images
+     */
+    public long getReplacedImages() {
+        return replacedImages.get();
+    }
+
     public BufferedImage getImage() {
         return image;
     }
@@ -175,24 +370,41 @@ public class ImagePanel extends JPanel implements SwingConstants {
 
     @Override
     protected void paintComponent(Graphics g) {
+        long start = System.nanoTime();
         super.paintComponent(g);
+
+        PendingImage pending = pendingImage.getAndSet(null);
+        if (pending != null) {
+            sourceTime = pending.sourceTime;
+            BufferedImage previous = this.image;
+            this.setImage(pending.image, false);
+            scaledImage = pending.scaled;
+            if (imagePool != null && previous != pending.image) imagePool.release(previous);
+        }
+        Dimension size = this.getSize();
+        if (!size.equals(panelSize)) panelSize = size;
         if(image == null) return;
 
         Graphics2D g2d = (Graphics2D) g;
         int xpos = 0;
         int ypos = 0;
 
-        BufferedImage image = ImageUtils.getScaledImage(this.image, this.getWidth(), this.getHeight());
+        // Scale to fit the panel, keeping the aspect ratio
+        Dimension fitted = getFittedSize(this.image, size.width, size.height);
+        int width = fitted.width;
+        int height = fitted.height;
 
         switch (horizontalAlignment){
             case LEFT:
+            case LEADING:
                 xpos = 0;
                 break;
             case CENTER:
-                xpos = (this.getWidth() - image.getWidth()) / 2;
+                xpos = (this.getWidth() - width) / 2;
                 break;
             case RIGHT:
-                xpos = this.getWidth() - image.getWidth();
+            case TRAILING:
+                xpos = this.getWidth() - width;
                 break;
         }
         switch (verticalAlignment){
@@ -200,13 +412,48 @@ public class ImagePanel extends JPanel implements SwingConstants {
                 ypos = 0;
                 break;
             case CENTER:
-                ypos = (this.getHeight() - image.getHeight()) / 2;
+                ypos = (this.getHeight() - height) / 2;
                 break;
             case BOTTOM:
-                ypos = this.getHeight() - image.getHeight();
+                ypos = this.getHeight() - height;
                 break;
         }
 
-        g2d.drawImage(image, xpos, ypos, null);
+        if (width == image.getWidth() && height == image.getHeight()) {
+            g2d.drawImage(image, xpos, ypos, null);
+        } else if (scaledImage != null && scaledImage.getWidth() == width && scaledImage.getHeight() == height) {
+            g2d.drawImage(scaledImage, xpos, ypos, null);
+        } else {
+            // The panel was resized after the image was scaled (or the image wasn't offered): draw it in one bilinear
+            // step until the next image is scaled to the new size
+            Object interpolation = g2d.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2d.drawImage(image, xpos, ypos, width, height, null);
+            if (interpolation != null) g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+        }
+
+        if (hud != null) {
+            hud.framePainted(System.nanoTime() - start, pending != null);
+            hud.paint(g2d);
+        }
+        if (paintListener != null && pending != null && sourceTime != 0) {
+            paintListener.accept(sourceTime);
+        }
+    }
+
+    /**
+     * An offered image, its source time, and the image scaled to fit the panel (null if it isn't scaled), swapped in
+     * and out as one so they always match
+     */
+    private static final class PendingImage {
+        final BufferedImage image;
+        final long sourceTime;
+        final BufferedImage scaled;
+
+        PendingImage(BufferedImage image, long sourceTime, BufferedImage scaled) {
+            this.image = image;
+            this.sourceTime = sourceTime;
+            this.scaled = scaled;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,252 @@
+package client.components;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * On-screen display of a stream's client-side performance: received/rendered fps, dropped frames, decode and
+ * paint time, payload size, source-to-screen latency, and the transport latency the source measured to us.
+ * <p>
+ * The counters are lock free, so recording costs next to nothing on the mailbox/playout threads. The text is only
+ * rebuilt (and rendered to a cached image) once a second; every other paint just draws the cached image.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class PerformanceHud {
+
+    /**
+     * How often the text is rebuilt (in nanoseconds)
+     */
+    private static final long REFRESH_INTERVAL = 1000000000L;
+
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 160);
+    private static final int PADDING = 4;
+
+    private final LongAdder received = new LongAdder();
+    private final LongAdder receivedBytes = new LongAdder();
+    private final LongAdder decodes = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder rendered = new LongAdder();
+    private final LongAdder paints = new LongAdder();
+    private final LongAdder paintNanos = new LongAdder();
+    private final LongAdder latencies = new LongAdder();
+    private final LongAdder latencyNanos = new LongAdder();
+
+    /**
+     * Latest transport latency the source measured delivering to us (in nanoseconds, 0 if unknown)
+     */
+    private volatile long transportNanos;
+
+    /**
+     * Counts frames dropped anywhere between the sink and the screen
+     */
+    private LongSupplier droppedCounter = () -> 0;
+
+    private volatile boolean visible;
+
+    // Only used on the EDT
+    private BufferedImage text;
+    private long lastRefresh = 0;
+    private long lastReceived, lastReceivedBytes, lastDecodes, lastDecodeNanos, lastRendered;
+    private long lastPaints, lastPaintNanos, lastLatencies, lastLatencyNanos;
+
+    /**
+     * Creates a HUD
+     *
+     * @param visible Whether the HUD is shown
+     */
+    public PerformanceHud(boolean visible) {
+        this.visible = visible;
+    }
+
+    /**
+     * Records a frame received from the source
+     *
+     * @param size Size of the payload (in bytes)
+     */
+    public void frameReceived(int size) {
+        received.increment();
+        receivedBytes.add(size);
+    }
+
+    /**
+     * Records the time taken to decode a frame
+     *
+     * @param nanos Decode time (in nanoseconds)
+     */
+    public void frameDecoded(long nanos) {
+        decodes.increment();
+        decodeNanos.add(nanos);
+    }
+
+    /**
+     * Records a paint of the panel
+     *
+     * @param nanos    Paint time (in nanoseconds)
+     * @param newFrame Whether the paint put a new frame on screen
+     */
+    public void framePainted(long nanos, boolean newFrame) {
+        paints.increment();
+        paintNanos.add(nanos);
+        if (newFrame) rendered.increment();
+    }
+
+    /**
+     * Records the latency of a painted frame, from when the source produced it to when it was painted.
+     * The source's clock may differ from ours, so this should be corrected for the offset between the clocks
+     * (see client.LatencyTracer).
+     *
+     * @param nanos Latency (in nanoseconds)
+     */
+    public void frameLatency(long nanos) {
+        latencies.increment();
+        latencyNanos.add(nanos);
+    }
+
+    /**
+     * Records the transport latency the source measured delivering to us (sent with each frame's trace, see
+     * server.SinkController)
+     *
+     * @param nanos Round trip time (in nanoseconds, 0 if unknown)
+     */
+    public void transportLatency(long nanos) {
+        if (nanos > 0) transportNanos = nanos;
+    }
+
+    /**
+     * Sets the counter of frames dropped before they reached the screen, read when the text is rebuilt
+     *
+     * @param droppedCounter Dropped frame counter
+     */
+    public void setDroppedCounter(LongSupplier droppedCounter) {
+        this.droppedCounter = droppedCounter;
+    }
+
+    /**
+     * Returns whether the HUD is shown
+     *
+     * @return True if the HUD is shown
+     */
+    public boolean isVisible() {
+        return visible;
+    }
+
+    /**
+     * Sets whether the HUD is shown
+     *
+     * @param visible True if the HUD is shown
+     */
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+        if (visible) lastRefresh = 0;
+    }
+
+    /**
+     * Draws the HUD in the top left corner, rebuilding the text if it's more than a second old.
+     * Must be called on the EDT.
+     *
+     * @param g Graphics to draw on
+     */
+    public void paint(Graphics2D g) {
+        if (!visible) return;
+        long now = System.nanoTime();
+        if (text == null || now - lastRefresh >= REFRESH_INTERVAL) {
+            text = renderText(buildLines(now), g);
+        }
+        g.drawImage(text, 0, 0, null);
+    }
+
+    /**
+     * Builds the HUD text from the change in the counters since the last refresh
+     *
+     * @param now Current time (nanoTime)
+     * @return Lines of text
+     */
+    private String[] buildLines(long now) {
+        double seconds = (lastRefresh == 0) ? 0 : (now - lastRefresh) / 1e9;
+
+        long received = this.received.sum();
+        long receivedBytes = this.receivedBytes.sum();
+        long decodes = this.decodes.sum();
+        long decodeNanos = this.decodeNanos.sum();
+        long rendered = this.rendered.sum();
+        long paints = this.paints.sum();
+        long paintNanos = this.paintNanos.sum();
+        long latencies = this.latencies.sum();
+        long latencyNanos = this.latencyNanos.sum();
+
+        long frames = received - lastReceived;
+        String[] lines = new String[]{
+                String.format("recv: %5.1f fps  render: %5.1f fps", rate(frames, seconds), rate(rendered - lastRendered, seconds)),
+                String.format("dropped: %d", droppedCounter.getAsLong()),
+                String.format("decode: %5.2f ms  paint: %5.2f ms",
+                        average(decodeNanos - lastDecodeNanos, decodes - lastDecodes) / 1e6,
+                        average(paintNanos - lastPaintNanos, paints - lastPaints) / 1e6),
+                String.format("payload: %6.1f KB  latency: %.0f ms",
+                        average(receivedBytes - lastReceivedBytes, frames) / 1024d,
+                        average(latencyNanos - lastLatencyNanos, latencies - lastLatencies) / 1e6),
+                String.format("transport: %.1f ms", transportNanos / 1e6)
+        };
+
+        lastRefresh = now;
+        lastReceived = received;
+        lastReceivedBytes = receivedBytes;
+        lastDecodes = decodes;
+        lastDecodeNanos = decodeNanos;
+        lastRendered = rendered;
+        lastPaints = paints;
+        lastPaintNanos = paintNanos;
+        lastLatencies = latencies;
+        lastLatencyNanos = latencyNanos;
+        return lines;
+    }
+
+    private static double rate(long count, double seconds) {
+        return (seconds == 0) ? 0 : count / seconds;
+    }
+
+    private static double average(long total, long count) {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+    /**
+     * Renders lines of text onto a translucent image
+     *
+     * @param lines Lines of text
+     * @param g     Graphics the image will be drawn on (for font metrics)
+     * @return Image
+     */
+    private BufferedImage renderText(String[] lines, Graphics2D g) {
+        FontMetrics metrics = g.getFontMetrics(FONT);
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        width += 2 * PADDING;
+        int height = lines.length * metrics.getHeight() + 2 * PADDING;
+
+        BufferedImage image = this.text;
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g2d = image.createGraphics();
+        g2d.setComposite(AlphaComposite.Src);
+        g2d.setColor(BACKGROUND);
+        g2d.fillRect(0, 0, width, height);
+        g2d.setComposite(AlphaComposite.SrcOver);
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(FONT);
+        g2d.setColor(Color.WHITE);
+        int y = PADDING + metrics.getAscent();
+        for (String line : lines) {
+            g2d.drawString(line, PADDING, y);
+            y += metrics.getHeight();
+        }
+        g2d.dispose();
+        return image;
+    }
+}
@@ -0,0 +1,416 @@
+package client.components;
+
+import client.Config;
+import client.GifClient;
+import client.JitterBuffer;
+import shared.util.ImagePool;
+import shared.util.ImageUtils;
+import shared.util.Log;
+
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.image.BufferStrategy;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Renders many sources as tiles in a single component.
+ * A single render loop runs at the display's refresh rate, and uses active rendering to draw only the tiles whose
+ * frame has changed since the last pass, so the cost depends on the number of changed tiles, not the number of
+ * notifications received.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class VideoWall extends Canvas implements Runnable {
+
+    private static final Color BACKGROUND = Color.WHITE;
+    private static final Color LABEL = Color.DARK_GRAY;
+    private static final int DEFAULT_REFRESH_RATE = 60;
+    private static final Dimension DEFAULT_TILE_SIZE = new Dimension(320, 240);
+
+    private final CopyOnWriteArrayList<Tile> tiles = new CopyOnWriteArrayList<>();
+
+    /**
+     * Set when the tiles need to be laid out and the whole wall redrawn
+     */
+    private volatile boolean layoutChanged = true;
+
+    private volatile Thread renderThread;
+
+    /**
+     * Timer to wait for the layout to settle before telling the sources about the new tile sizes
+     */
+    private final Timer viewportTimer;
+
+    /**
+     * @param sourceUpdates Executor that sends updates (e.g. new tile sizes) to the sources, off the EDT
+     */
+    public VideoWall(Executor sourceUpdates) {
+        this.setBackground(BACKGROUND);
+        this.setIgnoreRepaint(true);
+        this.addComponentListener(new ComponentAdapter() {
+            @Override
+            public void componentResized(ComponentEvent e) {
+                layoutChanged = true;
+            }
+        });
+
+        viewportTimer = new Timer(250, e -> {
+            List<Tile> update = new ArrayList<>(tiles);
+            sourceUpdates.execute(() -> update.forEach(t -> GifClient.getSink().setViewport(t.getSourceID(), t.getViewport())));
+        });
+        viewportTimer.setRepeats(false);
+    }
+
+    /**
+     * Adds a tile for a source
+     *
+     * @param sourceID Source the tile displays
+     * @param title    Label to display on the tile
+     * @return Tile
+     */
+    public Tile addTile(String sourceID, String title) {
+        Tile tile = new Tile(sourceID, title);
+        tiles.add(tile);
+        layoutChanged = true;
+        return tile;
+    }
+
+    /**
+     * Removes a source's tile
+     *
+     * @param sourceID Source
+     */
+    public void removeTile(String sourceID) {
+        tiles.removeIf(t -> {
+            if (!t.getSourceID().equals(sourceID)) return false;
+            t.jitterBuffer.close();
+            return true;
+        });
+        layoutChanged = true;
+    }
+
+    /**
+     * Gets the tile for a source
+     *
+     * @param sourceID Source
+     * @return Tile, or null if the source isn't on the wall
+     */
+    public Tile getTile(String sourceID) {
+        return tiles.stream().filter(t -> t.getSourceID().equals(sourceID)).findFirst().orElse(null);
+    }
+
+    /**
+     * Gets the sources on the wall
+     *
+     * @return List of SourceIDs
+     */
+    public List<String> getSourceIDs() {
+        List<String> sourceIDs = new ArrayList<>();
+        tiles.forEach(t -> sourceIDs.add(t.getSourceID()));
+        return sourceIDs;
+    }
+
+    /**
+     * Starts the render loop. The component must be displayable.
+     */
+    public synchronized void start() {
+        if (renderThread != null) return;
+        this.createBufferStrategy(2);
+        layoutChanged = true;
+        renderThread = new Thread(this, "WallRenderThread");
+        renderThread.setDaemon(true);
+        renderThread.start();
+    }
+
+    /**
+     * Stops the render loop
+     */
+    public synchronized void stop() {
+        if (renderThread == null) return;
+        renderThread.interrupt();
+        renderThread = null;
+    }
+
+    @Override
+    public void run() {
+        long frameTime = 1000000000L / getRefreshRate();
+        boolean partialUpdates = supportsPartialUpdates();
+        Log.Info(String.format("Video wall rendering at %d fps%s.", 1000000000L / frameTime, partialUpdates ? "" : " (full redraws)"));
+
+        while (renderThread == Thread.currentThread()) {
+            long start = System.nanoTime();
+            try {
+                render(!partialUpdates);
+            } catch (IllegalStateException ex) {
+                // Component not displayable anymore
+                Log.Warn("Video wall stopped: " + ex.getMessage());
+                return;
+            }
+
+            long remaining = frameTime - (System.nanoTime() - start);
+            if (remaining > 0) {
+                try {
+                    Thread.sleep(remaining / 1000000L, (int) (remaining % 1000000L));
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Does a render pass
+     *
+     * @param fullRedraw True to draw every tile, even if they haven't changed
+     */
+    private void render(boolean fullRedraw) {
+        BufferStrategy strategy = this.getBufferStrategy();
+        if (strategy == null) return;
+
+        if (layoutChanged) {
+            layoutChanged = false;
+            layoutTiles();
+            viewportTimer.restart();
+            fullRedraw = true;
+        }
+
+        // Pick up the new frames
+        List<Tile> changed = new ArrayList<>();
+        for (Tile tile : tiles) {
+            if (tile.swapFrame()) changed.add(tile);
+        }
+        if (!fullRedraw && changed.isEmpty()) return;
+
+        while (true) {
+            Graphics2D g2d = (Graphics2D) strategy.getDrawGraphics();
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            if (fullRedraw) {
+                g2d.setColor(BACKGROUND);
+                g2d.fillRect(0, 0, this.getWidth(), this.getHeight());
+                tiles.forEach(t -> t.draw(g2d));
+            } else {
+                changed.forEach(t -> t.draw(g2d));
+            }
+            g2d.dispose();
+
+            // If the buffer was restored/lost, what was drawn before has gone so everything needs drawing again
+            if (strategy.contentsRestored()) {
+                fullRedraw = true;
+                continue;
+            }
+            strategy.show();
+            if (strategy.contentsLost()) {
+                fullRedraw = true;
+                continue;
+            }
+            break;
+        }
+
+        Toolkit.getDefaultToolkit().sync();
+    }
+
+    /**
+     * Lays the tiles out in a grid that fills the component
+     */
+    private void layoutTiles() {
+        List<Tile> tiles = new ArrayList<>(this.tiles);
+        if (tiles.size() == 0) return;
+
+        int columns = (int) Math.ceil(Math.sqrt(tiles.size()));
+        int rows = (tiles.size() + columns - 1) / columns;
+        int width = this.getWidth() / columns;
+        int height = this.getHeight() / rows;
+        for (int i = 0; i < tiles.size(); i++) {
+            tiles.get(i).setBounds(new Rectangle((i % columns) * width, (i / columns) * height, width, height));
+        }
+    }
+
+    /**
+     * Gets the refresh rate of the display the wall is on
+     *
+     * @return Refresh rate (Hz)
+     */
+    private int getRefreshRate() {
+        GraphicsConfiguration config = this.getGraphicsConfiguration();
+        if (config != null) {
+            int refreshRate = config.getDevice().getDisplayMode().getRefreshRate();
+            if (refreshRate != DisplayMode.REFRESH_RATE_UNKNOWN) return refreshRate;
+        }
+        return DEFAULT_REFRESH_RATE;
+    }
+
+    /**
+     * Returns whether the back buffer keeps its contents after being shown, so only changed tiles need drawing
+     *
+     * @return True if partial updates are possible
+     */
+    private boolean supportsPartialUpdates() {
+        BufferCapabilities capabilities = this.getBufferStrategy().getCapabilities();
+        return !capabilities.isPageFlipping() || capabilities.getFlipContents() == BufferCapabilities.FlipContents.COPIED;
+    }
+
+    /**
+     * A source on the video wall
+     */
+    public static class Tile {
+
+        private final String sourceID;
+        private final String title;
+        private final ImagePool imagePool = new ImagePool(2);
+        private final JitterBuffer jitterBuffer;
+
+        /**
+         * Latest frame received, picked up on the next render pass
+         */
+        private final AtomicReference<BufferedImage> pendingImage = new AtomicReference<>();
+
+        /**
+         * Current frame (only used by the render thread)
+         */
+        private BufferedImage image;
+        /**
+         * Current frame scaled to fit the tile, and the frame it was scaled from (only used by the render thread)
+         */
+        private BufferedImage scaledImage;
+        private BufferedImage scaledSource;
+        private volatile Rectangle bounds = new Rectangle(DEFAULT_TILE_SIZE);
+
+        private Tile(String sourceID, String title) {
+            this.sourceID = sourceID;
+            this.title = title;
+            this.jitterBuffer = new JitterBuffer(sourceID, frame -> offerImage(frame), imagePool, Config.getPlayoutDelay());
+        }
+
+        /**
+         * Gets the source the tile displays
+         *
+         * @return SourceID
+         */
+        public String getSourceID() {
+            return sourceID;
+        }
+
+        /**
+         * Gets the pool that frames displayed in this tile should be decoded into
+         *
+         * @return Image pool
+         */
+        public ImagePool getImagePool() {
+            return imagePool;
+        }
+
+        /**
+         * Gets the size of the area the frames are displayed in
+         *
+         * @return Viewport size
+         */
+        public Dimension getViewport() {
+            return bounds.getSize();
+        }
+
+        /**
+         * Offers a frame to be displayed on the next render pass. Safe to call from any thread.
+         * If a frame is already waiting to be drawn, it is replaced.
+         *
+         * @param image Frame
+         */
+        public void offerImage(BufferedImage image) {
+            if (image == null) return;
+            imagePool.release(pendingImage.getAndSet(image));
+        }
+
+        /**
+         * Offers a frame to be displayed on the source's schedule, via the jitter buffer
+         *
+         * @param image      Frame
+         * @param sourceTime Time the source sent the frame
+         */
+        public void offerImage(BufferedImage image, long sourceTime) {
+            jitterBuffer.offer(sourceTime, image);
+        }
+
+        /**
+         * Gets the jitter buffer for the tile
+         *
+         * @return Jitter buffer
+         */
+        public JitterBuffer getJitterBuffer() {
+            return jitterBuffer;
+        }
+
+        /**
+         * Makes the pending frame the current frame
+         *
+         * @return True if the frame changed
+         */
+        private boolean swapFrame() {
+            BufferedImage pending = pendingImage.getAndSet(null);
+            if (pending == null) return false;
+            BufferedImage previous = image;
+            image = pending;
+            // The previous frame may be recycled and refilled, so the scaled frame can't be keyed on it anymore
+            scaledSource = null;
+            if (previous != pending) imagePool.release(previous);
+            return true;
+        }
+
+        private void setBounds(Rectangle bounds) {
+            this.bounds = bounds;
+        }
+
+        /**
+         * Gets the current frame scaled to a size, reusing the scaled frame if the frame and size haven't changed
+         *
+         * @param g2d    Graphics the frame will be drawn with
+         * @param width  Width to scale to
+         * @param height Height to scale to
+         * @return Scaled frame
+         */
+        private BufferedImage getScaledImage(Graphics2D g2d, int width, int height) {
+            if (image.getWidth() == width && image.getHeight() == height) {
+                return image;
+            }
+            if (scaledSource == image && scaledImage != null
+                    && scaledImage.getWidth() == width && scaledImage.getHeight() == height) {
+                return scaledImage;
+            }
+
+            // Reuse the last buffer if it's the right size, otherwise create one that matches the screen
+            if (scaledImage == null || scaledImage.getWidth() != width || scaledImage.getHeight() != height) {
+                scaledImage = g2d.getDeviceConfiguration().createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            }
+            ImageUtils.scaleImage(image, scaledImage);
+            scaledSource = image;
+            return scaledImage;
+        }
+
+        /**
+         * Draws the tile, scaling the frame to fit
+         *
+         * @param g2d Graphics to draw with
+         */
+        private void draw(Graphics2D g2d) {
+            Rectangle bounds = this.bounds;
+            g2d.setColor(BACKGROUND);
+            g2d.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+
+            if (image != null) {
+                double scale = Math.min((double) bounds.width / image.getWidth(), (double) bounds.height / image.getHeight());
+                int width = Math.max(1, (int) (scale * image.getWidth()));
+                int height = Math.max(1, (int) (scale * image.getHeight()));
+                g2d.drawImage(getScaledImage(g2d, width, height), bounds.x + (bounds.width - width) / 2, bounds.y + (bounds.height - height) / 2, null);
+            }
+
+            g2d.setColor(LABEL);
+            g2d.drawString(title, bounds.x + 4, bounds.y + bounds.height - 4);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package client.components;
+
+import client.GifClient;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Window for displaying many sources on a single video wall
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class WallWindow extends JFrame implements AutoCloseable {
+
+    VideoWall wall;
+
+    /**
+     * Whether the window is showing the streams (not hidden or minimised)
+     */
+    volatile boolean streamVisible = true;
+
+    /**
+     * Sends viewport and pause updates to the sources off the EDT, one at a time in the order they were made
+     */
+    ExecutorService sourceUpdates;
+
+    public WallWindow() {
+        super("Video Wall");
+
+        // Create GUI
+        this.setMinimumSize(new Dimension(640, 480));
+        this.setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
+        this.addWindowListener(new WindowHandler());
+        sourceUpdates = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "SourceUpdateThread");
+            t.setDaemon(true);
+            return t;
+        });
+
+        wall = new VideoWall(this::updateSources);
+        this.getContentPane().add(wall, BorderLayout.CENTER);
+        this.addComponentListener(new VisibilityHandler());
+    }
+
+    /**
+     * Returns whether the window is showing the streams; frames for a hidden wall don't need decoding
+     *
+     * @return True if the streams are visible
+     */
+    public boolean isStreamVisible() {
+        return streamVisible;
+    }
+
+    /**
+     * Updates whether the streams are visible, and asks the sources to pause/resume delivery to match
+     *
+     * @param visible True if the streams are visible
+     */
+    private void setStreamVisible(boolean visible) {
+        if (streamVisible == visible) return;
+        streamVisible = visible;
+        // Send the latest state when the update runs, so quick changes end on the right one
+        updateSources(() -> wall.getSourceIDs().forEach(sourceID -> GifClient.getSink().setPaused(sourceID, !streamVisible)));
+    }
+
+    /**
+     * Queues an update to send to the sources
+     *
+     * @param update Update
+     */
+    private void updateSources(Runnable update) {
+        try {
+            sourceUpdates.execute(update);
+        } catch (RejectedExecutionException e) {
+            // The window has been closed, so the sources have been disconnected
+        }
+    }
+
+    /**
+     * Gets the video wall displayed in this window
+     *
+     * @return Video wall
+     */
+    public VideoWall getWall() {
+        return wall;
+    }
+
+    @Override
+    public void close() {
+        wall.stop();
+        sourceUpdates.shutdown();
+        this.dispose();
+    }
+
+    /**
+     * Handler to pause the streams when the window is hidden
+     */
+    private class VisibilityHandler extends ComponentAdapter {
+        @Override
+        public void componentShown(ComponentEvent e) {
+            setStreamVisible(true);
+        }
+
+        @Override
+        public void componentHidden(ComponentEvent e) {
+            setStreamVisible(false);
+        }
+    }
+
+    /**
+     * Handler to start/stop rendering, to pause the streams when the window is minimised, and to unregister from
+     * all the sources when the window is closed
+     */
+    private class WindowHandler extends WindowAdapter {
+        @Override
+        public void windowIconified(WindowEvent e) {
+            setStreamVisible(false);
+        }
+
+        @Override
+        public void windowDeiconified(WindowEvent e) {
+            setStreamVisible(true);
+        }
+
+        @Override
+        public void windowOpened(WindowEvent e) {
+            wall.start();
+        }
+
+        /**
+         * Invoked when a window is in the process of being closed.
+         * The close operation can be overridden at this point.
+         *
+         * @param e
+         */
+        @Override
+        public void windowClosing(WindowEvent e) {
+            wall.getSourceIDs().forEach(GifClient::sourceDisconnect);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package client.recording;
+
+import shared.util.ImageUtils;
+import shared.util.Log;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Exports a recorded source to an animated GIF.
+ * Frames are read from the log, decoded and written one at a time, so recordings of any length can be exported.
+ * Each frame is shown until the next frame's timestamp, so the export plays back at the rate it was recorded.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class GifExporter {
+
+    /**
+     * Shortest frame delay (in 1/100s); most viewers slow anything shorter right down
+     */
+    private static final int MIN_DELAY = 2;
+
+    /**
+     * Delay used if there is only one frame (in 1/100s)
+     */
+    private static final int DEFAULT_DELAY = 10;
+
+    private final File logDirectory;
+
+    /**
+     * Creates an exporter for a recorded source
+     *
+     * @param logDirectory Directory of the source's log
+     */
+    public GifExporter(File logDirectory) {
+        this.logDirectory = logDirectory;
+    }
+
+    /**
+     * Exports the recording to a GIF
+     *
+     * @param output File to write the GIF to
+     * @return Number of frames exported
+     * @throws IOException Thrown if the log could not be read or the GIF could not be written
+     */
+    public int export(File output) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName("gif");
+        if (!writers.hasNext()) {
+            throw new IOException("No GIF writer available.");
+        }
+        ImageWriter writer = writers.next();
+        int frames = 0;
+
+        try (LogReader reader = new LogReader(logDirectory);
+             ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            if (stream == null) {
+                throw new IOException("Failed to open " + output);
+            }
+            writer.setOutput(stream);
+            writer.prepareWriteSequence(null);
+
+            // Hold one frame back, as a frame's delay depends on when the next one arrived
+            BufferedImage held = null;
+            long heldTime = 0;
+            int delay = DEFAULT_DELAY;
+            while (reader.hasNext()) {
+                LogReader.Record record = reader.next();
+                if (record.getType() != StreamRecorder.TYPE_FRAME) continue;
+
+                BufferedImage image;
+                try {
+                    image = ImageUtils.bytesToImage(record.getPayload());
+                } catch (IOException e) {
+                    Log.Warn("Skipping frame that could not be decoded: " + e.getMessage());
+                    continue;
+                }
+                if (image == null) continue;
+
+                if (held != null) {
+                    delay = (int) Math.max(MIN_DELAY, (record.getTimestamp() - heldTime) / 10);
+                    writeFrame(writer, held, delay, frames == 0);
+                    frames++;
+                }
+                held = image;
+                heldTime = record.getTimestamp();
+            }
+            if (held != null) {
+                writeFrame(writer, held, delay, frames == 0);
+                frames++;
+            }
+            writer.endWriteSequence();
+        } finally {
+            writer.dispose();
+        }
+        Log.Info(String.format("Exported %d frames from %s to %s", frames, logDirectory, output));
+        return frames;
+    }
+
+    /**
+     * Writes a frame to the GIF
+     *
+     * @param writer GIF writer
+     * @param image  Frame
+     * @param delay  Time to show the frame for (in 1/100s)
+     * @param first  Whether this is the first frame (which carries the loop extension)
+     * @throws IOException Thrown if the frame could not be written
+     */
+    private static void writeFrame(ImageWriter writer, BufferedImage image, int delay, boolean first) throws IOException {
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+        String format = metadata.getNativeMetadataFormatName();
+        IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(format);
+
+        IIOMetadataNode control = getNode(root, "GraphicControlExtension");
+        control.setAttribute("disposalMethod", "none");
+        control.setAttribute("userInputFlag", "FALSE");
+        control.setAttribute("transparentColorFlag", "FALSE");
+        control.setAttribute("delayTime", Integer.toString(delay));
+        control.setAttribute("transparentColorIndex", "0");
+
+        if (first) {
+            // Loop forever
+            IIOMetadataNode application = new IIOMetadataNode("ApplicationExtension");
+            application.setAttribute("applicationID", "NETSCAPE");
+            application.setAttribute("authenticationCode", "2.0");
+            application.setUserObject(new byte[]{0x1, 0, 0});
+            getNode(root, "ApplicationExtensions").appendChild(application);
+        }
+
+        metadata.setFromTree(format, root);
+        writer.writeToSequence(new IIOImage(image, null, metadata), param);
+    }
+
+    /**
+     * Gets a metadata node, creating it if it doesn't exist
+     *
+     * @param rootNode Root metadata node
+     * @param nodeName Node to retrieve
+     * @return Node
+     */
+    private static IIOMetadataNode getNode(IIOMetadataNode rootNode, String nodeName) {
+        int nNodes = rootNode.getLength();
+        for (int i = 0; i < nNodes; i++) {
+            if (rootNode.item(i).getNodeName().compareToIgnoreCase(nodeName) == 0) {
+                return ((IIOMetadataNode) rootNode.item(i));
+            }
+        }
+        IIOMetadataNode node = new IIOMetadataNode(nodeName);
+        rootNode.appendChild(node);
+        return (node);
+    }
+}
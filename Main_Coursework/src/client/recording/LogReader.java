@@ -0,0 +1,211 @@
+package client.recording;
+
+import shared.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+
+/**
+ * Reads the records of a SegmentedLog back in order.
+ * Records that fail their CRC check (e.g. the last record written before a crash) are skipped.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class LogReader implements Iterator<LogReader.Record>, AutoCloseable {
+
+    private final File directory;
+    private final long[] segments;
+    private int segment = -1;
+
+    private RandomAccessFile logFile;
+    private MappedByteBuffer log;
+    private long[][] index;
+    private int entry = 0;
+
+    private Record next;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens a log for reading
+     *
+     * @param directory Log directory
+     * @throws IOException Thrown if the directory is not a log
+     */
+    public LogReader(File directory) throws IOException {
+        this.directory = directory;
+        if (!directory.isDirectory()) {
+            throw new IOException("Log directory does not exist: " + directory);
+        }
+        this.segments = SegmentedLog.getSegments(directory);
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            while (next == null) {
+                if (index == null || entry >= index.length) {
+                    if (!nextSegment()) return false;
+                    continue;
+                }
+                next = readRecord(index[entry++]);
+            }
+        } catch (IOException e) {
+            Log.Error("Failed to read log: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Record next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Record record = next;
+        next = null;
+        return record;
+    }
+
+    /**
+     * Moves onto the next segment
+     *
+     * @return False if there are no more segments
+     * @throws IOException Thrown if the segment could not be opened
+     */
+    private boolean nextSegment() throws IOException {
+        close();
+        if (++segment >= segments.length) return false;
+
+        String name = SegmentedLog.getSegmentName(segments[segment]);
+        index = readIndex(new File(directory, name + SegmentedLog.INDEX_EXTENSION));
+        entry = 0;
+        logFile = new RandomAccessFile(new File(directory, name + SegmentedLog.LOG_EXTENSION), "r");
+        log = logFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, logFile.length());
+        return true;
+    }
+
+    /**
+     * Reads the record for an index entry
+     *
+     * @param entry Index entry (timestamp, position, length)
+     * @return Record, or null if the record is corrupt
+     */
+    private Record readRecord(long[] entry) {
+        int position = (int) entry[1];
+        int length = (int) entry[2];
+        if (position + SegmentedLog.RECORD_HEADER + length > log.capacity()) {
+            Log.Warn(String.format("Record at %d in segment %d is truncated.", position, segments[segment]));
+            return null;
+        }
+
+        ByteBuffer buffer = log.duplicate();
+        buffer.position(position);
+        if (buffer.getInt() != length) {
+            Log.Warn(String.format("Record at %d in segment %d does not match the index.", position, segments[segment]));
+            return null;
+        }
+        long timestamp = buffer.getLong();
+        byte type = buffer.get();
+        int checksum = buffer.getInt();
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+
+        crc.reset();
+        crc.update(payload, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            Log.Warn(String.format("Record at %d in segment %d failed its checksum.", position, segments[segment]));
+            return null;
+        }
+        return new Record(timestamp, type, payload);
+    }
+
+    @Override
+    public void close() {
+        log = null;
+        index = null;
+        if (logFile != null) {
+            try {
+                logFile.close();
+            } catch (IOException e) {
+                Log.Warn("Failed to close segment: " + e.getMessage());
+            }
+            logFile = null;
+        }
+    }
+
+    /**
+     * Reads a segment's index, stopping at the unused (zeroed) tail if the segment was not closed properly
+     *
+     * @param file Index file
+     * @return Index entries (timestamp, position, length)
+     * @throws IOException Thrown if the index could not be read
+     */
+    static long[][] readIndex(File file) throws IOException {
+        try (RandomAccessFile indexFile = new RandomAccessFile(file, "r")) {
+            ByteBuffer buffer = indexFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, indexFile.length());
+            int count = buffer.capacity() / SegmentedLog.INDEX_ENTRY;
+            int valid = 0;
+            long[][] entries = new long[count][];
+            for (int i = 0; i < count; i++) {
+                long timestamp = buffer.getLong();
+                int position = buffer.getInt();
+                int length = buffer.getInt();
+                // Every record has a timestamp, so a zero entry is past the end
+                if (timestamp == 0 && position == 0 && length == 0) break;
+                entries[valid++] = new long[]{timestamp, position, length};
+            }
+            if (valid == count) return entries;
+            long[][] trimmed = new long[valid][];
+            System.arraycopy(entries, 0, trimmed, 0, valid);
+            return trimmed;
+        }
+    }
+
+    /**
+     * A record read from a log
+     */
+    public static class Record {
+        private final long timestamp;
+        private final byte type;
+        private final byte[] payload;
+
+        Record(long timestamp, byte type, byte[] payload) {
+            this.timestamp = timestamp;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /**
+         * Gets the time the record was created
+         *
+         * @return Timestamp (in milliseconds)
+         */
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        /**
+         * Gets the type of the record
+         *
+         * @return Type
+         */
+        public byte getType() {
+            return type;
+        }
+
+        /**
+         * Gets the record payload
+         *
+         * @return Payload
+         */
+        public byte[] getPayload() {
+            return payload;
+        }
+    }
+}
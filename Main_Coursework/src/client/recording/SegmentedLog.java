@@ -0,0 +1,192 @@
+package client.recording;
+
+import shared.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of records, split into segments that are written through memory maps.
+ * <p>
+ * Each segment is a pair of files named after the number of the first record in the segment:
+ * <ul>
+ * <li>.log - records: length (int), timestamp (long), type (byte), CRC32 of payload (int), payload</li>
+ * <li>.index - one entry per record: timestamp (long), position in .log (int), length of payload (int)</li>
+ * </ul>
+ * When a segment is closed, both files are truncated to what was written. If the process dies first, the unused
+ * tail of a segment is zeroes, and readers stop at the first zero index entry.
+ * <p>
+ * Not thread safe; a log should only be written to by one thread.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SegmentedLog implements AutoCloseable {
+
+    static final String LOG_EXTENSION = ".log";
+    static final String INDEX_EXTENSION = ".index";
+    static final int RECORD_HEADER = 4 + 8 + 1 + 4;
+    static final int INDEX_ENTRY = 8 + 4 + 4;
+
+    private final File directory;
+    private final int segmentSize;
+
+    private long nextRecord = 0;
+    private long segmentBase = 0;
+    private RandomAccessFile logFile;
+    private RandomAccessFile indexFile;
+    private MappedByteBuffer log;
+    private MappedByteBuffer index;
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Opens a log for appending. If the directory already contains a log, new records go in a new segment after it.
+     *
+     * @param directory   Directory to store the segments in
+     * @param segmentSize Size of each segment (in bytes)
+     * @throws IOException Thrown if the directory could not be created/read
+     */
+    public SegmentedLog(File directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create log directory: " + directory);
+        }
+
+        // Carry on from the last segment
+        long[] segments = getSegments(directory);
+        if (segments.length != 0) {
+            long last = segments[segments.length - 1];
+            nextRecord = last + LogReader.readIndex(new File(directory, getSegmentName(last) + INDEX_EXTENSION)).length;
+        }
+    }
+
+    /**
+     * Appends a record to the log
+     *
+     * @param timestamp Timestamp of the record
+     * @param type      Type of the record
+     * @param payload   Record payload
+     * @throws IOException Thrown if the record could not be written
+     */
+    public void append(long timestamp, byte type, byte[] payload) throws IOException {
+        int size = RECORD_HEADER + payload.length;
+        if (log == null || log.remaining() < size || index.remaining() < INDEX_ENTRY) {
+            roll(size);
+        }
+
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+
+        int position = log.position();
+        log.putInt(payload.length);
+        log.putLong(timestamp);
+        log.put(type);
+        log.putInt((int) crc.getValue());
+        log.put(payload);
+
+        index.putLong(timestamp);
+        index.putInt(position);
+        index.putInt(payload.length);
+        nextRecord++;
+    }
+
+    /**
+     * Writes the current segment out to disk
+     */
+    public void flush() {
+        if (log == null) return;
+        log.force();
+        index.force();
+    }
+
+    /**
+     * Gets the number of records in the log
+     *
+     * @return Number of records
+     */
+    public long getRecordCount() {
+        return nextRecord;
+    }
+
+    /**
+     * Closes the current segment, and starts a new one big enough for a record
+     *
+     * @param recordSize Size of the record that needs to fit
+     * @throws IOException Thrown if the segment could not be created
+     */
+    private void roll(int recordSize) throws IOException {
+        closeSegment();
+
+        segmentBase = nextRecord;
+        String name = getSegmentName(segmentBase);
+        int size = Math.max(segmentSize, recordSize);
+        logFile = new RandomAccessFile(new File(directory, name + LOG_EXTENSION), "rw");
+        indexFile = new RandomAccessFile(new File(directory, name + INDEX_EXTENSION), "rw");
+        log = logFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        index = indexFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) (size / RECORD_HEADER + 1) * INDEX_ENTRY);
+        Log.Debug(String.format("Started segment %s in %s", name, directory));
+    }
+
+    /**
+     * Flushes and closes the current segment, truncating it to what was written
+     */
+    private void closeSegment() {
+        if (log == null) return;
+        flush();
+        int logLength = log.position();
+        int indexLength = index.position();
+        log = null;
+        index = null;
+        try {
+            // Can fail on platforms that don't allow truncating mapped files; readers cope with the zero tail
+            logFile.setLength(logLength);
+            indexFile.setLength(indexLength);
+        } catch (IOException e) {
+            Log.Debug("Failed to truncate segment: " + e.getMessage());
+        }
+        try {
+            logFile.close();
+            indexFile.close();
+        } catch (IOException e) {
+            Log.Warn("Failed to close segment: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() {
+        closeSegment();
+    }
+
+    /**
+     * Gets the name of a segment
+     *
+     * @param base Number of the first record in the segment
+     * @return Name
+     */
+    static String getSegmentName(long base) {
+        return String.format("%020d", base);
+    }
+
+    /**
+     * Gets the segments in a log directory
+     *
+     * @param directory Log directory
+     * @return Sorted list of segment bases
+     */
+    static long[] getSegments(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(INDEX_EXTENSION));
+        if (files == null) return new long[0];
+        return Arrays.stream(files)
+                .map(f -> f.getName().substring(0, f.getName().length() - INDEX_EXTENSION.length()))
+                .filter(n -> n.matches("\\d+"))
+                .mapToLong(Long::parseLong)
+                .sorted()
+                .toArray();
+    }
+}
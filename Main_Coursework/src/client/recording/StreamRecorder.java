@@ -0,0 +1,216 @@
+package client.recording;
+
+import shared.Notification;
+import shared.codec.PayloadCodecs;
+import shared.interfaces.ISinkCallbackHandler;
+import shared.util.Log;
+import shared.util.RunnableAdapter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Callback handler that records notifications to disk, with one SegmentedLog per source.
+ * <p>
+ * notify() only queues the notification; a single writer thread appends them to the logs in batches, and forces
+ * the logs to disk periodically rather than after every record, so recording keeps up with many sources.
+ * Frames (byte[]) are stored as they were received; any other notification is stored serialised.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class StreamRecorder implements ISinkCallbackHandler, AutoCloseable {
+
+    public static final byte TYPE_FRAME = 0;
+    public static final byte TYPE_OBJECT = 1;
+
+    /**
+     * Maximum number of notifications written per batch
+     */
+    private static final int BATCH_SIZE = 256;
+
+    /**
+     * How often the logs are forced to disk (in milliseconds)
+     */
+    private static final long FLUSH_INTERVAL = 1000;
+
+    private final File directory;
+    private final int segmentSize;
+    private final LinkedBlockingQueue<Notification<?>> queue;
+    private final HashMap<String, SegmentedLog> logs = new HashMap<>();
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    private final LongAdder records = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     * Creates a recorder and starts its writer thread
+     *
+     * @param directory     Directory to record into (each source is recorded in a subdirectory)
+     * @param segmentSize   Size of each log segment (in bytes)
+     * @param queueCapacity Number of notifications that can be waiting to be written
+     */
+    public StreamRecorder(File directory, int segmentSize, int queueCapacity) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.writerThread = new Thread(new Writer(), "RecorderThread");
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues a notification to be recorded.
+     * The recorder is lossless, so this is called on the RMI thread that received the notification. If the writer has
+     * fallen behind, this waits for space, slowing the source's delivery to us rather than dropping frames or
+     * running out of memory.
+     *
+     * @param notification Notification received
+     */
+    @Override
+    public void notify(Notification<?> notification) {
+        if (!running) return;
+        try {
+            queue.put(notification);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Every notification is recorded, so the sink mustn't drop any, and sources mustn't thin them out
+     *
+     * @return True
+     */
+    @Override
+    public boolean isLossless() {
+        return true;
+    }
+
+    /**
+     * Writes a batch of notifications to the logs
+     *
+     * @param batch Notifications
+     */
+    private void write(ArrayList<Notification<?>> batch) {
+        for (Notification<?> notification : batch) {
+            String sourceID = notification.getSource();
+            try {
+                SegmentedLog log = logs.get(sourceID);
+                if (log == null) {
+                    log = new SegmentedLog(new File(directory, sourceID), segmentSize);
+                    logs.put(sourceID, log);
+                    Log.Info(String.format("Recording %s to %s", sourceID, new File(directory, sourceID)));
+                }
+
+                byte type;
+                byte[] payload = PayloadCodecs.getBytes(notification.getData());
+                if (payload != null) {
+                    type = TYPE_FRAME;
+                } else {
+                    type = TYPE_OBJECT;
+                    payload = serialise(notification);
+                }
+                log.append(notification.getTimeMillis(), type, payload);
+                records.increment();
+                bytes.add(payload.length);
+            } catch (IOException e) {
+                errors.increment();
+                Log.Error(String.format("Failed to record notification from %s: %s", sourceID, e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Serialises a notification
+     *
+     * @param notification Notification
+     * @return Serialised notification
+     * @throws IOException Thrown if the notification could not be serialised
+     */
+    private static byte[] serialise(Notification<?> notification) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(notification);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Gets the number of notifications waiting to be written
+     *
+     * @return Queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Creates a report of what has been recorded
+     *
+     * @return Report
+     */
+    public String report() {
+        return String.format("recorded: %d, %.2f MB, queued: %d, errors: %d",
+                records.sum(), bytes.sum() / (1024d * 1024d), queue.size(), errors.sum());
+    }
+
+    /**
+     * Stops recording, writes out anything still queued, and closes the logs
+     */
+    @Override
+    public void close() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Log.Warn("Interrupted whilst closing recorder.");
+        }
+    }
+
+    /**
+     * Drains the queue into the logs
+     */
+    private class Writer extends RunnableAdapter {
+        @Override
+        public void runSafe() throws Exception {
+            ArrayList<Notification<?>> batch = new ArrayList<>(BATCH_SIZE);
+            long lastFlush = System.currentTimeMillis();
+            while (running) {
+                try {
+                    Notification<?> first = queue.poll(FLUSH_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (first != null) {
+                        batch.add(first);
+                        queue.drainTo(batch, BATCH_SIZE - 1);
+                        write(batch);
+                        batch.clear();
+                    }
+                } catch (InterruptedException e) {
+                    // Closing
+                }
+                if (System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL) {
+                    logs.values().forEach(SegmentedLog::flush);
+                    lastFlush = System.currentTimeMillis();
+                }
+            }
+
+            // Write what's left, then close the logs
+            while (queue.drainTo(batch, BATCH_SIZE) != 0) {
+                write(batch);
+                batch.clear();
+            }
+            logs.values().forEach(SegmentedLog::close);
+            logs.clear();
+            Log.Info("Recorder closed, " + report());
+        }
+    }
+}
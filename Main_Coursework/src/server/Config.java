@@ -1,5 +1,6 @@
 package server;
 
+import shared.util.CustomRMISocketFactory;
 import shared.util.Log;
 
 import java.io.File;
@@ -11,6 +12,10 @@ import java.nio.file.Paths;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Config Class
@@ -26,8 +31,28 @@ public class Config {
 
     private static int threadNumber = Runtime.getRuntime().availableProcessors() * 8;
 
+    private static int readerNumber = Runtime.getRuntime().availableProcessors();
+
     private static String source = null;
 
+    private static int targetLatency = 100;
+
+    private static int historySize = 100;
+
+    private static boolean offHeapFrames = false;
+
+    private static boolean tcpNoDelay = true;
+
+    private static int sendBufferSize = 0;
+
+    private static int receiveBufferSize = 0;
+
+    private static int compressionLevel = 0;
+
+    private static List<Integer> renditionWidths = new ArrayList<>(Arrays.asList(640, 320, 160));
+
+    private static LinkedHashMap<String, String> variants = new LinkedHashMap<>();
+
     private static String rmiServer = null;
     private static Integer rmiPort = null;
 
@@ -139,6 +164,194 @@ public class Config {
         saveConfig();
     }
 
+    /**
+     * Get the number of readers used to decode the GIF in parallel
+     * @return Number of readers
+     */
+    public static int getReaderNumber() {
+        return readerNumber;
+    }
+
+    /**
+     * Set the number of readers used to decode the GIF in parallel
+     * @param readerNumber Number of readers
+     */
+    public static void setReaderNumber(int readerNumber) {
+        Config.readerNumber = readerNumber;
+        saveConfig();
+    }
+
+    /**
+     * Get the widths of the lower resolution renditions to create for each stream
+     * @return List of rendition widths
+     */
+    public static List<Integer> getRenditionWidths() {
+        return new ArrayList<>(renditionWidths);
+    }
+
+    /**
+     * Set the widths of the lower resolution renditions to create for each stream
+     * @param renditionWidths List of rendition widths
+     */
+    public static void setRenditionWidths(List<Integer> renditionWidths) {
+        Config.renditionWidths = new ArrayList<>(renditionWidths);
+        saveConfig();
+    }
+
+    /**
+     * Get the number of notifications retained for each sink, so sinks can resume after reconnecting
+     * @return Number of notifications
+     */
+    public static int getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * Set the number of notifications retained for each sink, so sinks can resume after reconnecting
+     * @param historySize Number of notifications
+     */
+    public static void setHistorySize(int historySize) {
+        Config.historySize = historySize;
+        saveConfig();
+    }
+
+    /**
+     * Get whether encoded frames are stored off the heap
+     * @return True if frames are stored in direct buffers
+     */
+    public static boolean isOffHeapFrames() {
+        return offHeapFrames;
+    }
+
+    /**
+     * Set whether encoded frames are stored off the heap, which keeps large streams out of the garbage collected heap
+     * @param offHeapFrames True to store frames in direct buffers
+     */
+    public static void setOffHeapFrames(boolean offHeapFrames) {
+        Config.offHeapFrames = offHeapFrames;
+        saveConfig();
+    }
+
+    /**
+     * Get whether Nagle's algorithm is disabled on RMI connections (small messages are sent straight away)
+     * @return True if TCP_NODELAY is set
+     */
+    public static boolean isTcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    /**
+     * Set whether Nagle's algorithm is disabled on RMI connections (takes effect on restart)
+     * @param tcpNoDelay True to set TCP_NODELAY
+     */
+    public static void setTcpNoDelay(boolean tcpNoDelay) {
+        Config.tcpNoDelay = tcpNoDelay;
+        saveConfig();
+    }
+
+    /**
+     * Get the send buffer size of RMI connections
+     * @return Size in bytes (0 for the system default)
+     */
+    public static int getSendBufferSize() {
+        return sendBufferSize;
+    }
+
+    /**
+     * Set the send buffer size of RMI connections (takes effect on restart)
+     * @param sendBufferSize Size in bytes (0 for the system default)
+     */
+    public static void setSendBufferSize(int sendBufferSize) {
+        Config.sendBufferSize = sendBufferSize;
+        saveConfig();
+    }
+
+    /**
+     * Get the receive buffer size of RMI connections
+     * @return Size in bytes (0 for the system default)
+     */
+    public static int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    /**
+     * Set the receive buffer size of RMI connections (takes effect on restart)
+     * @param receiveBufferSize Size in bytes (0 for the system default)
+     */
+    public static void setReceiveBufferSize(int receiveBufferSize) {
+        Config.receiveBufferSize = receiveBufferSize;
+        saveConfig();
+    }
+
+    /**
+     * Get the level RMI connections are compressed at, if the other end also compresses
+     * @return Deflate level, 1 (fastest) to 9 (smallest); 0 for no compression
+     */
+    public static int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * Set the level RMI connections are compressed at, if the other end also compresses (takes effect on restart)
+     * @param compressionLevel Deflate level, 1 (fastest) to 9 (smallest); 0 for no compression
+     */
+    public static void setCompressionLevel(int compressionLevel) {
+        Config.compressionLevel = compressionLevel;
+        saveConfig();
+    }
+
+    /**
+     * Creates a socket factory for RMI connections using the configured options
+     * @return Socket factory
+     */
+    public static CustomRMISocketFactory getSocketFactory() {
+        return new CustomRMISocketFactory(tcpNoDelay, sendBufferSize, receiveBufferSize, compressionLevel);
+    }
+
+    /**
+     * Get the target time to deliver a notification to a sink
+     * @return Target latency (in milliseconds)
+     */
+    public static int getTargetLatency() {
+        return targetLatency;
+    }
+
+    /**
+     * Set the target time to deliver a notification to a sink
+     * @param targetLatency Target latency (in milliseconds)
+     */
+    public static void setTargetLatency(int targetLatency) {
+        Config.targetLatency = targetLatency;
+        saveConfig();
+    }
+
+    /**
+     * Get the variants of the stream (variant name => transform chain)
+     * @return Map of variants
+     */
+    public static Map<String, String> getVariants() {
+        return new LinkedHashMap<>(variants);
+    }
+
+    /**
+     * Add a variant of the stream
+     * @param name  Variant name
+     * @param chain Transform chain, e.g. "crop(0,0,320,240) | greyscale"
+     */
+    public static void addVariant(String name, String chain) {
+        variants.put(name, chain);
+        saveConfig();
+    }
+
+    /**
+     * Remove a variant of the stream
+     * @param name Variant name
+     */
+    public static void removeVariant(String name) {
+        variants.remove(name);
+        saveConfig();
+    }
+
     /**
      * Saves the config to the file specified by configLocation.
      */
@@ -198,6 +411,42 @@ public class Config {
         b.append(threadNumber);
         b.append(";\n");
 
+        b.append("readers: ");
+        b.append(readerNumber);
+        b.append(";\n");
+
+        b.append("latency: ");
+        b.append(targetLatency);
+        b.append(";\n");
+
+        b.append("history: ");
+        b.append(historySize);
+        b.append(";\n");
+
+        b.append("offheap: ");
+        b.append(offHeapFrames);
+        b.append(";\n");
+
+        b.append("tcpNoDelay: ");
+        b.append(tcpNoDelay);
+        b.append(";\n");
+
+        b.append("sendBuffer: ");
+        b.append(sendBufferSize);
+        b.append(";\n");
+
+        b.append("receiveBuffer: ");
+        b.append(receiveBufferSize);
+        b.append(";\n");
+
+        b.append("compression: ");
+        b.append(compressionLevel);
+        b.append(";\n");
+
+        b.append("renditions: ");
+        b.append(renditionWidths.stream().map(String::valueOf).collect(Collectors.joining(",")));
+        b.append(";\n");
+
         if (rmiServer != null && rmiPort != null) {
             b.append("server: ");
             b.append(rmiServer);
@@ -206,6 +455,20 @@ public class Config {
             b.append(";\n");
         }
 
+        if (variants.size() != 0) {
+            variants.forEach((name, chain) -> {
+                b.append("variant: ");
+                b.append(name);
+                b.append(" = ");
+                b.append(chain);
+                b.append(";\n");
+            });
+        } else {
+            b.append("// add variants of the stream with a chain of transforms (greyscale, watermark(text), crop(x,y,w,h)).");
+            b.append("// variant: kiosk = greyscale");
+            b.append(";\n");
+        }
+
         if (source != null) {
             b.append("source: ");
             b.append(source);
@@ -305,6 +568,44 @@ public class Config {
             case "threads":
                 threadNumber = Integer.parseInt(strings[1]);
                 break;
+            case "readers":
+                readerNumber = Integer.parseInt(strings[1]);
+                break;
+            case "latency":
+                targetLatency = Integer.parseInt(strings[1]);
+                break;
+            case "history":
+                historySize = Integer.parseInt(strings[1]);
+                break;
+            case "offheap":
+                offHeapFrames = Boolean.parseBoolean(strings[1]);
+                break;
+            case "tcpNoDelay":
+                tcpNoDelay = Boolean.parseBoolean(strings[1]);
+                break;
+            case "sendBuffer":
+                sendBufferSize = Integer.parseInt(strings[1]);
+                break;
+            case "receiveBuffer":
+                receiveBufferSize = Integer.parseInt(strings[1]);
+                break;
+            case "compression":
+                compressionLevel = Integer.parseInt(strings[1]);
+                break;
+            case "variant":
+                String[] variant = strings[1].split("=", 2);
+                if (variant.length != 2 || variant[0].trim().length() == 0) {
+                    throw new ParseException("Invalid variant statement: '" + statement + "'", number);
+                }
+                variants.put(variant[0].trim(), variant[1].trim());
+                break;
+            case "renditions":
+                renditionWidths = new ArrayList<>();
+                for (String width : strings[1].split(",")) {
+                    if (width.trim().length() == 0) continue;
+                    renditionWidths.add(Integer.parseInt(width.trim()));
+                }
+                break;
         }
     }
 }
@@ -1,24 +1,36 @@
 package server;
 
+import server.transforms.TransformChain;
 import server.util.PatchedGIFImageReader;
 import com.sun.imageio.plugins.gif.GIFImageReaderSpi;
 import shared.Notification;
+import shared.codec.PayloadCodecs;
 import shared.exceptions.ConnectException;
 import shared.util.ImageUtils;
 import shared.util.Log;
+import shared.util.PixelKernels;
 import shared.util.RunnableAdapter;
 
 import javax.imageio.ImageIO;
-import javax.imageio.ImageReader;
 import javax.imageio.metadata.IIOMetadata;
 import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 /**
  * GIF Streaming Source
@@ -30,19 +42,54 @@ public class GifStreamer extends NotificationSource {
 
     private static DecimalFormat df = new DecimalFormat("00.00");
     /**
-     * ArrayList of the frames of the GIF (stored as bytes so they can be serialised)
+     * Rendition ladders of the GIF, keyed by transform chain ("" = untransformed).
+     * Each ladder is full resolution first, then in decreasing size.
      */
-    private ArrayList<byte[]> images;
+    private HashMap<String, ArrayList<Rendition>> renditions;
+    /**
+     * Variant name => transform chain key
+     */
+    private HashMap<String, String> variantChains;
+    /**
+     * Transform chain key => chain
+     */
+    private HashMap<String, TransformChain> transformChains;
     private ConcurrentHashMap<Integer, BufferedImage> loadedImages;
-    private ConcurrentHashMap<Integer, byte[]> processedImages;
+    private ConcurrentHashMap<String, ConcurrentHashMap<Integer, BufferedImage>> transformedImages;
+    private AtomicInteger transformedFrames;
+    private AtomicInteger processedImages;
+    private ConcurrentHashMap<Integer, IIOMetadataNode> frameMetadata;
+    /**
+     * Frames that are identical to an earlier frame (frame => earlier frame), which are shared rather than being
+     * transformed and converted again
+     */
+    private HashMap<Integer, Integer> repeatedFrames;
+    /**
+     * First failure of the tasks in the current loading stage (reading, transforming, converting), which fails the
+     * load
+     */
+    private volatile IOException loadError;
 
     private double percentage = 0d;
 
+    /**
+     * Number of frame skipping levels (skip 1 in 2, 2 in 3, ...) used once a sink is on the lowest rendition
+     */
+    private static final int SKIP_LEVELS = 3;
+
     /**
      * Frame interval in 100th seconds (10 ms/0.01s)
      */
     private int interval = 100;
 
+    /**
+     * Frame that is currently being streamed, and the sequence number it was streamed with (0 before the first frame).
+     * Guarded by frameLock, so they're always read as a pair.
+     */
+    private int currentFrame = 0;
+    private long currentSequence = 0;
+    private final Object frameLock = new Object();
+
     public GifStreamer(File gifFile) throws RemoteException {
         super(Config.getServerID() + " " + gifFile.getName().split("\\.")[0]);
 
@@ -60,11 +107,12 @@ public class GifStreamer extends NotificationSource {
         // Process GIF file and extract frames
         try {
             processGif(gifFile);
-            processImageList();
             loadedImages = null;
+            repeatedFrames = null;
+            transformedImages = null;
             processedImages = null;
         } catch (IOException e) {
-            Log.Fatal("Failed to process gif!");
+            Log.Fatal("Failed to process gif: " + e.getMessage());
             return;
         }
 
@@ -111,7 +159,10 @@ public class GifStreamer extends NotificationSource {
     /**
      * Process the gif file and convert it to an array of frames and set frame interval time.
      * <p>
-     * I take no credit for this method as it uses code sourced from: <ul>
+     * The file is scanned once to build a frame offset index, then frames are decoded in parallel by
+     * independent readers (each seeded with the index), and finally composited in order.
+     * <p>
+     * I take no credit for the metadata handling in this method as it uses code sourced from: <ul>
      * <li>c24w - http://stackoverflow.com/a/8935070/5909019</li>
      * <li>Ansel Zandegran - http://stackoverflow.com/a/16234122/5909019</li>
      * <li>Sage - http://stackoverflow.com/a/20079110/5909019</li>
@@ -121,85 +172,478 @@ public class GifStreamer extends NotificationSource {
      * @throws IOException
      */
     private void processGif(File gif) throws IOException {
-        // Read GIF file
-        ImageReader ir = new PatchedGIFImageReader(new GIFImageReaderSpi());
-        ir.setInput(ImageIO.createImageInputStream(gif));
-
-        int numberOfImages = ir.getNumImages(true);
+        int numberOfImages;
+        // Scan GIF file once to build the frame offset index
+        PatchedGIFImageReader ir = new PatchedGIFImageReader(new GIFImageReaderSpi());
+        try (ImageInputStream input = ImageIO.createImageInputStream(gif)) {
+            ir.setInput(input);
+
+            numberOfImages = ir.getNumImages(true);
+            List<Long> frameIndex = ir.getImageStartPositions();
+
+            loadedImages = new ConcurrentHashMap<>(numberOfImages);
+            frameMetadata = new ConcurrentHashMap<>(numberOfImages);
+            loadError = null;
+
+            // Split the frames into disjoint ranges, one range per reader
+            int readers = Math.max(1, Math.min(Config.getReaderNumber(), numberOfImages));
+            int framesPerReader = (numberOfImages + readers - 1) / readers;
+            CountDownLatch readersDone = new CountDownLatch((numberOfImages + framesPerReader - 1) / framesPerReader);
+
+            MonitorThread m = new MonitorThread("Reading");
+            m.start();
+            try {
+                for (int start = 0; start < numberOfImages; start += framesPerReader) {
+                    dispatchEvent(new FrameReader(gif, frameIndex, start, Math.min(start + framesPerReader, numberOfImages), readersDone));
+                }
+                awaitStage(readersDone, "reading");
+            } finally {
+                m.done();
+                System.out.println();
+            }
+            // Readers that died of an Error (e.g. out of memory decoding a huge frame) leave frames missing
+            if (loadedImages.size() != numberOfImages) {
+                throw new IOException(String.format("Only read %d of %d frames", loadedImages.size(), numberOfImages));
+            }
+            Log.Info("GIF loaded!");
 
+            // Frames are stored as deltas, so composite them in order
+            compositeFrames(ir, numberOfImages);
+        } finally {
+            ir.dispose();
+        }
 
-        MonitorThread m = new MonitorThread("Reading");
+        // Run each unique transform chain over every frame
+        createVariants();
+        percentage = 0d;
+        transformedFrames = new AtomicInteger(0);
+        transformedImages = new ConcurrentHashMap<>();
+        transformChains.keySet().forEach(key -> transformedImages.put(key, new ConcurrentHashMap<>(numberOfImages)));
+        int uniqueImages = numberOfImages - repeatedFrames.size();
+        CountDownLatch transformersDone = new CountDownLatch(uniqueImages);
+        MonitorThread m = new MonitorThread("Transforming");
         m.start();
-
-        loadedImages = new ConcurrentHashMap<>(numberOfImages);
-        // Extract all the images from the file
-        for (int i = 0; i < numberOfImages; i++) {
-            loadedImages.put(i, ir.read(i));
-            percentage = (i + 1) * 100d / numberOfImages;
-            synchronized (this) {
-                this.notify();
+        try {
+            for (int i = 0; i < numberOfImages; i++) {
+                if (repeatedFrames.containsKey(i)) continue;
+                dispatchEvent(new FrameTransformer(i, uniqueImages, transformersDone));
+            }
+            awaitStage(transformersDone, "transforming");
+        } finally {
+            m.done();
+            System.out.println();
+        }
+        for (Map.Entry<String, ConcurrentHashMap<Integer, BufferedImage>> chain : transformedImages.entrySet()) {
+            if (chain.getValue().size() != uniqueImages) {
+                throw new IOException(String.format("Only transformed %d of %d frames (%s)", chain.getValue().size(), uniqueImages, chain.getKey()));
             }
         }
-        m.done();
-        System.out.println();
-        Log.Info("GIF loaded!");
+        Log.Info("GIF transformed!");
+
+        renditions = new HashMap<>();
+        transformChains.keySet().forEach(key -> renditions.put(key, createRenditions(key, numberOfImages)));
 
         percentage = 0d;
-        processedImages = new ConcurrentHashMap<>();
+        processedImages = new AtomicInteger(0);
+        int totalImages = uniqueImages * renditions.values().stream().mapToInt(ArrayList::size).sum();
+        CountDownLatch processorsDone = new CountDownLatch(totalImages);
         m = new MonitorThread("Converting");
         m.start();
-        for (int i = 0; i < numberOfImages; i++) {
-            dispatchEvent(new ImageProcessor(i));
+        try {
+            for (Map.Entry<String, ArrayList<Rendition>> ladder : renditions.entrySet()) {
+                for (Rendition rendition : ladder.getValue()) {
+                    for (int i = 0; i < numberOfImages; i++) {
+                        if (repeatedFrames.containsKey(i)) continue;
+                        dispatchEvent(new ImageProcessor(ladder.getKey(), rendition, i, totalImages, processorsDone));
+                    }
+                }
+            }
+            awaitStage(processorsDone, "converting");
+        } finally {
+            m.done();
+            System.out.println();
         }
-        do {
-            synchronized (this) {
-                try {
-                    this.wait();
-                } catch (InterruptedException e) {
+        if (processedImages.get() != totalImages) {
+            throw new IOException(String.format("Only converted %d of %d frames", processedImages.get(), totalImages));
+        }
+        for (Map.Entry<Integer, Integer> repeat : repeatedFrames.entrySet()) {
+            for (ArrayList<Rendition> ladder : renditions.values()) {
+                for (Rendition rendition : ladder) {
+                    rendition.shareFrame(repeat.getKey(), repeat.getValue());
                 }
             }
-        } while ((processedImages.size() != loadedImages.size()));
-        m.done();
-        System.out.println();
+        }
         Log.Info("GIF converted!");
 
         // Get the frame interval time
-        IIOMetadata gifMetaData = ir.getImageMetadata(0);
-        String formatName = gifMetaData.getNativeMetadataFormatName();
-
-        IIOMetadataNode rootNode = (IIOMetadataNode) gifMetaData.getAsTree(formatName);
-        IIOMetadataNode graphicsControlExtensionNode = getNode(rootNode, "GraphicControlExtension");
+        IIOMetadataNode graphicsControlExtensionNode = getNode(frameMetadata.get(0), "GraphicControlExtension");
 
-        String delayTime = graphicsControlExtensionNode.getAttribute("delayTime");
-        this.interval = Integer.parseInt(graphicsControlExtensionNode.getAttribute("delayTime"));
+        this.interval = getIntAttribute(graphicsControlExtensionNode, "delayTime", 0);
         if(this.interval == 0){
             this.interval = 10;
         }
         Log.Info("Delay time: " + this.interval);
+        frameMetadata = null;
+    }
+
+    /**
+     * Composites the decoded frames (in order) onto the logical screen, replacing each frame in loadedImages
+     * with the full image that should be displayed for that frame.
+     * Frames identical to the one before are recorded in repeatedFrames.
+     *
+     * @param ir             Reader used to build the frame index
+     * @param numberOfImages Number of frames
+     * @throws IOException
+     */
+    private void compositeFrames(PatchedGIFImageReader ir, int numberOfImages) throws IOException {
+        IIOMetadata streamMetadata = ir.getStreamMetadata();
+        IIOMetadataNode screenNode = getNode((IIOMetadataNode) streamMetadata.getAsTree(streamMetadata.getNativeMetadataFormatName()), "LogicalScreenDescriptor");
+        int width = getIntAttribute(screenNode, "logicalScreenWidth", 0);
+        int height = getIntAttribute(screenNode, "logicalScreenHeight", 0);
+        if (width == 0 || height == 0) {
+            width = loadedImages.get(0).getWidth();
+            height = loadedImages.get(0).getHeight();
+        }
+
+        repeatedFrames = new HashMap<>();
+        int[] canvas = new int[width * height];
+        int[] previousPixels = null;
+        for (int i = 0; i < numberOfImages; i++) {
+            IIOMetadataNode rootNode = frameMetadata.get(i);
+            IIOMetadataNode descriptorNode = getNode(rootNode, "ImageDescriptor");
+            int x = getIntAttribute(descriptorNode, "imageLeftPosition", 0);
+            int y = getIntAttribute(descriptorNode, "imageTopPosition", 0);
+            String disposal = getNode(rootNode, "GraphicControlExtension").getAttribute("disposalMethod");
+
+            BufferedImage frame = loadedImages.get(i);
+            int[] previous = disposal.equals("restoreToPrevious") ? canvas.clone() : null;
+
+            PixelKernels.blend(PixelKernels.expandIndexed(frame), frame.getWidth(), frame.getHeight(), canvas, width, height, x, y);
+            BufferedImage composited = PixelKernels.fromPremultiplied(canvas, width, height);
+            int[] pixels = PixelKernels.getPixels(composited);
+
+            // A frame that changes nothing (e.g. one that only extends the previous frame's delay) shares that frame
+            if (previousPixels != null && PixelKernels.diffRect(previousPixels, pixels, width, height) == null) {
+                int original = repeatedFrames.getOrDefault(i - 1, i - 1);
+                repeatedFrames.put(i, original);
+                loadedImages.put(i, loadedImages.get(original));
+            } else {
+                loadedImages.put(i, composited);
+                previousPixels = pixels;
+            }
+
+            // Dispose of the frame ready for the next one
+            if (disposal.equals("restoreToBackgroundColor")) {
+                PixelKernels.fill(canvas, width, height, new Rectangle(x, y, frame.getWidth(), frame.getHeight()), 0);
+            } else if (previous != null) {
+                canvas = previous;
+            }
+        }
+        if (!repeatedFrames.isEmpty()) {
+            Log.Info(String.format("%d of %d frames repeat the previous frame", repeatedFrames.size(), numberOfImages));
+        }
+    }
+
+    /**
+     * Waits for the tasks of a loading stage to finish, then fails the load if any of them failed
+     *
+     * @param done  Latch counted down by each task when it finishes (whether or not it succeeded)
+     * @param stage Name of the stage (for the error message)
+     * @throws IOException The first failure of any task, or if interrupted whilst waiting
+     */
+    private void awaitStage(CountDownLatch done, String stage) throws IOException {
+        try {
+            done.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted whilst " + stage + " GIF", e);
+        }
+        if (loadError != null) {
+            throw loadError;
+        }
+    }
+
+    /**
+     * Records the failure of a loading task, keeping the first if several fail
+     *
+     * @param error Failure
+     */
+    private synchronized void loadFailed(IOException error) {
+        if (loadError == null) loadError = error;
+    }
+
+    /**
+     * Gets an integer attribute from a metadata node
+     *
+     * @param node         Node to get the attribute from
+     * @param name         Attribute name
+     * @param defaultValue Value to return if the attribute is not set
+     * @return Attribute value
+     */
+    private static int getIntAttribute(IIOMetadataNode node, String name, int defaultValue) {
+        String value = node.getAttribute(name);
+        if (value == null || value.length() == 0) {
+            return defaultValue;
+        }
+        return Integer.parseInt(value);
+    }
+
+    /**
+     * Parses the configured variants into transform chains.
+     * Variants with the same chain share the chain, so it is only run once per frame.
+     */
+    private void createVariants() {
+        variantChains = new HashMap<>();
+        transformChains = new HashMap<>();
+        transformChains.put("", new TransformChain(new ArrayList<>()));
+
+        for (Map.Entry<String, String> variant : Config.getVariants().entrySet()) {
+            try {
+                TransformChain chain = TransformChain.parse(variant.getValue());
+                transformChains.putIfAbsent(chain.getKey(), chain);
+                variantChains.put(variant.getKey(), chain.getKey());
+                Log.Info(String.format("Variant '%s': %s", variant.getKey(), chain.getKey()));
+            } catch (IllegalArgumentException ex) {
+                Log.Error(String.format("Failed to parse variant '%s': %s", variant.getKey(), ex.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Creates a rendition ladder: the full resolution rendition, then one rendition for each configured width
+     * that is smaller than the (transformed) GIF.
+     *
+     * @param chainKey       Transform chain the ladder is for
+     * @param numberOfImages Number of frames
+     * @return Rendition ladder
+     */
+    private ArrayList<Rendition> createRenditions(String chainKey, int numberOfImages) {
+        BufferedImage firstFrame = transformedImages.get(chainKey).get(0);
+        int width = firstFrame.getWidth();
+        int height = firstFrame.getHeight();
+
+        ArrayList<Rendition> renditions = new ArrayList<>();
+        renditions.add(new Rendition(width, height, numberOfImages));
+        Config.getRenditionWidths().stream()
+                .filter(w -> w > 0 && w < width)
+                .distinct()
+                .sorted(Comparator.reverseOrder())
+                .forEach(w -> renditions.add(new Rendition(w, Math.max(1, (int) Math.round((double) height * w / width)), numberOfImages)));
+
+        Log.Info(String.format("Renditions%s: %s", chainKey.length() == 0 ? "" : " (" + chainKey + ")", renditions.stream()
+                .map(r -> r.getWidth() + "x" + r.getHeight())
+                .collect(Collectors.joining(", "))));
+        return renditions;
+    }
+
+    /**
+     * Gets the transform chain key of the variant a sink has subscribed to
+     *
+     * @param sinkID ID of sink
+     * @return Chain key ("" if the sink hasn't subscribed to a known variant)
+     */
+    private String getChainKey(UUID sinkID) {
+        String variant = getVariant(sinkID);
+        if (variant == null) {
+            return "";
+        }
+        return variantChains.getOrDefault(variant, "");
+    }
+
+    /**
+     * Selects the smallest rendition that fills a viewport
+     *
+     * @param renditions Rendition ladder
+     * @param viewport   Viewport size (null for full resolution)
+     * @return Index of rendition
+     */
+    private int selectRendition(ArrayList<Rendition> renditions, Dimension viewport) {
+        if (viewport == null) {
+            return 0;
+        }
+        for (int i = renditions.size() - 1; i > 0; i--) {
+            if (renditions.get(i).fills(viewport)) {
+                return i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Levels 0..renditions-1 step down the rendition ladder, further levels skip frames
+     *
+     * @return Highest level
+     */
+    @Override
+    protected int getMaxLevel() {
+        return renditions.values().stream().mapToInt(ArrayList::size).max().orElse(1) - 1 + SKIP_LEVELS;
+    }
+
+    /**
+     * Gets the frame rate of the GIF
+     *
+     * @return Frames per second
+     */
+    @Override
+    protected int getFrameRate() {
+        return Math.max(1, Math.round(100f / interval));
+    }
+
+    /**
+     * Sends a newly registered sink the current frame, so it doesn't have to wait for the next frame to be streamed
+     *
+     * @param sinkID ID of sink
+     */
+    @Override
+    protected void sinkRegistered(UUID sinkID) {
+        sendCurrentFrame(sinkID);
+    }
+
+    /**
+     * Sends a sink that has resumed the current frame, so it doesn't show a stale frame until the next one
+     *
+     * @param sinkID ID of sink
+     */
+    @Override
+    protected void sinkResumed(UUID sinkID) {
+        sendCurrentFrame(sinkID);
+    }
+
+    /**
+     * Sends a sink the current frame of its variant.
+     * The frame is sent with the sequence number it was streamed with, as it's the same frame again; a new number
+     * would show up as a gap to every other sink.
+     *
+     * @param sinkID ID of sink
+     */
+    private void sendCurrentFrame(UUID sinkID) {
+        if (renditions == null) return;
+        int frame;
+        long sequence;
+        synchronized (frameLock) {
+            frame = currentFrame;
+            sequence = currentSequence;
+        }
+        // Nothing has been streamed yet, so the sink will get the first frame
+        if (sequence == 0) return;
+
+        ArrayList<Rendition> ladder = renditions.get(getChainKey(sinkID));
+        Rendition rendition = ladder.get(selectRendition(ladder, getViewport(sinkID)));
+        sendNotification(sinkID, new Notification<>(sourceID, rendition.getFrame(frame, supportsCodec(sinkID, PayloadCodecs.TILED_IMAGE_ID)), sequence));
     }
 
-    private void processImageList() {
-        images = new ArrayList<>(processedImages.size());
-        for (int i = 0; i < processedImages.size(); i++) {
-            images.add(processedImages.get(i));
+    /**
+     * Decodes a range of frames using its own reader seeded with the shared frame offset index.
+     * The first failure (of any reader) is stored in loadError, and stops the other readers.
+     */
+    private class FrameReader extends RunnableAdapter {
+        File gif;
+        List<Long> frameIndex;
+        int start;
+        int end;
+        CountDownLatch done;
+
+        public FrameReader(File gif, List<Long> frameIndex, int start, int end, CountDownLatch done) {
+            this.gif = gif;
+            this.frameIndex = frameIndex;
+            this.start = start;
+            this.end = end;
+            this.done = done;
+        }
+
+        @Override
+        public void runSafe() throws Exception {
+            PatchedGIFImageReader ir = new PatchedGIFImageReader(new GIFImageReaderSpi());
+            int frame = start;
+            try (ImageInputStream input = ImageIO.createImageInputStream(gif)) {
+                ir.setInput(input);
+                ir.setImageStartPositions(frameIndex);
+                for (; frame < end && loadError == null; frame++) {
+                    IIOMetadata metadata = ir.getImageMetadata(frame);
+                    frameMetadata.put(frame, (IIOMetadataNode) metadata.getAsTree(metadata.getNativeMetadataFormatName()));
+                    loadedImages.put(frame, ir.read(frame));
+                    percentage = loadedImages.size() * 100d / (frameIndex.size() - 1);
+                }
+            } catch (Exception e) {
+                // Malformed frames can make the decoder throw anything, not just IOExceptions
+                loadFailed((e instanceof IOException) ? (IOException) e : new IOException(String.format("Failed to read frame %d: %s", frame, e), e));
+            } finally {
+                ir.dispose();
+                done.countDown();
+            }
         }
     }
 
+    /**
+     * Runs every transform chain over a frame, sharing the output of common chain prefixes.
+     * A failure is stored in loadError.
+     */
+    private class FrameTransformer extends RunnableAdapter {
+        int number;
+        int totalFrames;
+        CountDownLatch done;
+
+        public FrameTransformer(int number, int totalFrames, CountDownLatch done) {
+            this.number = number;
+            this.totalFrames = totalFrames;
+            this.done = done;
+        }
+
+        @Override
+        public void runSafe() throws Exception {
+            HashMap<String, BufferedImage> cache = new HashMap<>();
+            BufferedImage frame = loadedImages.get(number);
+            try {
+                for (Map.Entry<String, TransformChain> chain : transformChains.entrySet()) {
+                    transformedImages.get(chain.getKey()).put(number, chain.getValue().apply(frame, cache));
+                }
+            } catch (Exception e) {
+                loadFailed((e instanceof IOException) ? (IOException) e : new IOException(String.format("Failed to transform frame %d: %s", number, e), e));
+            } finally {
+                percentage = transformedFrames.incrementAndGet() * 100d / totalFrames;
+                done.countDown();
+            }
+        }
+    }
+
+    /**
+     * Scales a transformed frame to a rendition's size and encodes it.
+     * A failure is stored in loadError.
+     */
     private class ImageProcessor extends RunnableAdapter {
+        String chainKey;
+        Rendition rendition;
         int number;
+        int totalImages;
+        CountDownLatch done;
 
-        public ImageProcessor(int number) {
+        public ImageProcessor(String chainKey, Rendition rendition, int number, int totalImages, CountDownLatch done) {
+            this.chainKey = chainKey;
+            this.rendition = rendition;
             this.number = number;
+            this.totalImages = totalImages;
+            this.done = done;
         }
 
         @Override
         public void runSafe() throws Exception {
-            BufferedImage bufferedImage = loadedImages.get(number);
-            byte[] imageBytes = ImageUtils.imageToBytes(bufferedImage);
-            processedImages.put(number, imageBytes);
-            percentage = processedImages.size() * 100d / loadedImages.size();
-            synchronized (GifStreamer.this) {
-                GifStreamer.this.notify();
+            try {
+                BufferedImage bufferedImage = transformedImages.get(chainKey).get(number);
+                if (bufferedImage.getWidth() != rendition.getWidth() || bufferedImage.getHeight() != rendition.getHeight()) {
+                    int[] pixels = PixelKernels.downscale(PixelKernels.getPixels(bufferedImage), bufferedImage.getWidth(), bufferedImage.getHeight(), rendition.getWidth(), rendition.getHeight());
+                    bufferedImage = PixelKernels.toImage(pixels, rendition.getWidth(), rendition.getHeight());
+                }
+                rendition.setFrame(number, ImageUtils.imageToBytes(bufferedImage));
+                // Large frames are also stored tiled, which sinks that can decode tiles decode in parallel
+                int strips = ImageUtils.getTileStrips(bufferedImage);
+                if (strips > 1) {
+                    rendition.setTiledFrame(number, ImageUtils.imageToTiledBytes(bufferedImage, strips));
+                }
+                percentage = processedImages.incrementAndGet() * 100d / totalImages;
+            } catch (Exception e) {
+                loadFailed((e instanceof IOException) ? (IOException) e : new IOException(String.format("Failed to convert frame %d at %dx%d: %s", number, rendition.getWidth(), rendition.getHeight(), e), e));
+            } finally {
+                done.countDown();
             }
         }
     }
@@ -216,8 +660,50 @@ public class GifStreamer extends NotificationSource {
         public void run() {
             boolean shouldExit = false;
             while (!shouldExit) {
-                for (int i = 0; i < images.size(); i++) {
-                    sendNotification(new Notification<>(GifStreamer.this.sourceID, images.get(i)));
+                for (int i = 0; i < renditions.get("").get(0).getFrameCount(); i++) {
+                    // Every rendition of the frame shares a sequence number, so each sink sees one number per frame
+                    long sequence = nextSequence();
+                    synchronized (frameLock) {
+                        currentFrame = i;
+                        currentSequence = sequence;
+                    }
+                    // Send each sink the smallest rendition of its variant that fills its viewport
+                    HashMap<String, Notification<?>[]> notificationCache = new HashMap<>();
+                    for (UUID sinkID : getRegisteredSinks()) {
+                        // Don't send anything to sinks that aren't displaying the stream
+                        if (isPaused(sinkID)) continue;
+
+                        String chainKey = getChainKey(sinkID);
+                        ArrayList<Rendition> renditions = GifStreamer.this.renditions.get(chainKey);
+                        // Renditions' plain frames, then their tiled frames
+                        Notification<?>[] notifications = notificationCache.computeIfAbsent(chainKey, k -> new Notification<?>[2 * renditions.size()]);
+                        int rendition = selectRendition(renditions, getViewport(sinkID));
+
+                        // Keep to the frame rate negotiated with the sink
+                        int stride = getFrameStride(sinkID);
+
+                        // Adapt to how quickly the sink is receiving frames, unless it needs every frame
+                        SinkController controller = isLossless(sinkID) ? null : getController(sinkID);
+                        if (controller != null) {
+                            if (controller.isBacklogged()) {
+                                controller.dropped();
+                                continue;
+                            }
+                            int steps = Math.min(controller.getLevel(), renditions.size() - 1 - rendition);
+                            int skip = controller.getLevel() - steps;
+                            rendition += steps;
+                            stride = Math.max(stride, skip + 1);
+                        }
+                        if (stride > 1 && i % stride != 0) {
+                            continue;
+                        }
+                        boolean tiled = renditions.get(rendition).isTiled() && supportsCodec(sinkID, PayloadCodecs.TILED_IMAGE_ID);
+                        int slot = tiled ? renditions.size() + rendition : rendition;
+                        if (notifications[slot] == null) {
+                            notifications[slot] = new Notification<>(GifStreamer.this.sourceID, renditions.get(rendition).getFrame(i, tiled), sequence);
+                        }
+                        sendNotification(sinkID, notifications[slot]);
+                    }
                     try {
                         Thread.sleep(interval * 10);
                     } catch (InterruptedException e) {
@@ -1,6 +1,10 @@
 package server;
 
 import shared.Notification;
+import shared.SessionSettings;
+import shared.SinkCapabilities;
+import shared.codec.PayloadCodec;
+import shared.codec.PayloadCodecs;
 import shared.exceptions.ConnectException;
 import shared.exceptions.RegisterFailException;
 import shared.interfaces.INotificationSink;
@@ -8,18 +12,21 @@ import shared.interfaces.INotificationSource;
 import shared.interfaces.INotificationSourceProxy;
 import shared.util.*;
 
+import java.awt.*;
 import java.io.IOException;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.Registry;
 import java.rmi.server.RMISocketFactory;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * A Notification Source
@@ -29,6 +36,11 @@ import java.util.concurrent.ConcurrentLinkedQueue;
  * @since 02/12/2016
  */
 public abstract class NotificationSource extends UnicastRemoteObject implements INotificationSource {
+    /**
+     * Most notifications sent to a sink in one batch
+     */
+    private static final int MAX_BATCH = 32;
+
     protected static WorkerPool workPool;
     /**
      * ID of the source (used to bind to the registry server)
@@ -46,10 +58,39 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
      */
     private ConcurrentHashMap<UUID, INotificationSink> registeredSinks;
     /**
-     * Data structure to keep shared.util.notifications that cannot be delivered to sinks.
-     * 1 queue for each sink.
+     * Map of sinks (UUID=>history) of the notifications recently sent to each sink,
+     * used to redeliver notifications that failed to send and to resume sinks that reconnect
+     */
+    private ConcurrentHashMap<UUID, SinkHistory> sinkHistories;
+    /**
+     * Sequence number of the last notification sent by this source
+     */
+    private final AtomicLong sequence = new AtomicLong(0);
+    /**
+     * Map of sinks (UUID=>viewport size) that have told us how big their display area is
+     */
+    private ConcurrentHashMap<UUID, Dimension> sinkViewports;
+    /**
+     * Map of sinks (UUID=>variant name) that have subscribed to a variant
+     */
+    private ConcurrentHashMap<UUID, String> sinkVariants;
+    /**
+     * Set of sinks that have asked for delivery to be paused
+     */
+    private Set<UUID> pausedSinks;
+    /**
+     * Map of sinks (UUID=>controller) used to adapt delivery to each sink's speed
+     */
+    private ConcurrentHashMap<UUID, SinkController> sinkControllers;
+    /**
+     * Map of sinks (UUID=>settings) of how notifications are delivered to each sink
+     */
+    private ConcurrentHashMap<UUID, SessionSettings> sinkSettings;
+    /**
+     * Map of sinks (UUID=>queue) of the deliveries to each sink, so each sink is sent notifications one at a time,
+     * in order
      */
-    private HashMap<UUID, ConcurrentLinkedQueue<Notification>> notificationQueue;
+    private ConcurrentHashMap<UUID, SinkQueue> sinkQueues;
 
     public NotificationSource() throws RemoteException {
         this(Config.getServerID());
@@ -60,9 +101,15 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
         Runtime.getRuntime().addShutdownHook(new ShutdownHandler());
         this.sourceID = sourceID;
         this.registeredSinks = new ConcurrentHashMap<>();
-        this.notificationQueue = new HashMap<>();
+        this.sinkHistories = new ConcurrentHashMap<>();
+        this.sinkViewports = new ConcurrentHashMap<>();
+        this.sinkControllers = new ConcurrentHashMap<>();
+        this.sinkVariants = new ConcurrentHashMap<>();
+        this.sinkSettings = new ConcurrentHashMap<>();
+        this.sinkQueues = new ConcurrentHashMap<>();
+        this.pausedSinks = ConcurrentHashMap.newKeySet();
         try {
-            RMISocketFactory.setSocketFactory(new CustomRMISocketFactory());
+            RMISocketFactory.setSocketFactory(Config.getSocketFactory());
         } catch (IOException e) {
             Log.Warn("Failed to add custom RMI Socket Factory...");
         }
@@ -89,6 +136,7 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
     private void startWorkers() {
         Log.Info("Starting workers...");
         NotificationSource.workPool = new WorkerPool(Config.getThreadNumber());
+        NotificationSource.workPool.scheduleTask(new MetricsReporter(), MetricsReporter.INTERVAL);
     }
 
     /**
@@ -206,12 +254,17 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
                 // If the sink doesn't have a UUID, create one
                 if (sinkID == null) sinkID = getUUID();
 
+                // Sinks that didn't say what they support get what every sink supports
+                this.sinkSettings.putIfAbsent(sinkID, negotiate(sinkID, SinkCapabilities.legacy(null)));
+
                 // Store the sink
                 this.registeredSinks.put(sinkID, sink);
 
-                // Create the queue for storing messages that fail to send
-                this.notificationQueue.put(sinkID, new ConcurrentLinkedQueue<>());
+                // Create the history for redelivering notifications that fail to send
+                this.sinkHistories.put(sinkID, new SinkHistory(Config.getHistorySize()));
+                this.sinkControllers.put(sinkID, new SinkController(sinkID, Config.getTargetLatency(), getMaxLevel()));
                 Log.Info("Sink registered: " + UUIDUtils.UUIDToBase64String(sinkID));
+                sinkRegistered(sinkID);
                 return true;
             } catch (Exception e) {
                 Log.Error(e.toString());
@@ -219,13 +272,330 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
         } else {
             this.registeredSinks.put(sinkID, sink);
             Log.Info("Sink reregistered: " + UUIDUtils.UUIDToBase64String(sinkID));
-            sendQueue(sinkID);
+            sendUndelivered(sinkID);
+            sinkRegistered(sinkID);
             return true;
         }
 
         throw new RegisterFailException();
     }
 
+    /**
+     * Registers a sink to receive shared.util.notifications, negotiating how they are delivered from what the sink
+     * supports
+     *
+     * @param sinkID       ID of sink (null to have one assigned)
+     * @param sink         Sink to register
+     * @param capabilities What the sink supports
+     * @return Negotiated settings (including the ID the sink is registered under)
+     * @throws RemoteException
+     */
+    @Override
+    public SessionSettings register(UUID sinkID, INotificationSink sink, SinkCapabilities capabilities) throws RemoteException, RegisterFailException {
+        if (sinkID == null) sinkID = getUUID();
+
+        // The settings must be in place before registering, as the source may send the current state straight away
+        SessionSettings settings = negotiate(sinkID, capabilities);
+        this.sinkSettings.put(sinkID, settings);
+        if (capabilities.getViewport() != null) setViewport(sinkID, capabilities.getViewport());
+        register(sinkID, sink);
+        Log.Info(String.format("Sink negotiated: %s, %s", UUIDUtils.UUIDToBase64String(sinkID), settings));
+        return settings;
+    }
+
+    /**
+     * Negotiates how notifications are delivered to a sink
+     *
+     * @param sinkID       ID of sink
+     * @param capabilities What the sink supports
+     * @return Settings
+     */
+    private SessionSettings negotiate(UUID sinkID, SinkCapabilities capabilities) {
+        return SessionSettings.negotiate(sinkID, capabilities, PayloadCodecs.getIDs(), getFrameRate(), true);
+    }
+
+    /**
+     * Gets the frame rate of the source's stream, which sinks may ask to be sent less often than
+     *
+     * @return Frames per second (0 if the source doesn't stream)
+     */
+    protected int getFrameRate() {
+        return 0;
+    }
+
+    /**
+     * Gets the settings negotiated with a sink
+     *
+     * @param sinkID ID of sink
+     * @return Settings (null if the sink isn't registered)
+     */
+    protected SessionSettings getSettings(UUID sinkID) {
+        return sinkSettings.get(sinkID);
+    }
+
+    /**
+     * Gets how many frames of the stream a sink should be sent one of, to keep to the frame rate negotiated with it
+     *
+     * @param sinkID ID of sink
+     * @return Frame stride (1 to send every frame)
+     */
+    protected int getFrameStride(UUID sinkID) {
+        SessionSettings settings = sinkSettings.get(sinkID);
+        int frameRate = getFrameRate();
+        if (settings == null || settings.getFrameRate() == 0 || frameRate == 0 || settings.getFrameRate() >= frameRate) {
+            return 1;
+        }
+        return (frameRate + settings.getFrameRate() - 1) / settings.getFrameRate();
+    }
+
+    /**
+     * Returns whether a sink needs every notification at full quality, so mustn't be adapted to its speed
+     *
+     * @param sinkID ID of sink
+     * @return True if delivery to the sink is lossless
+     */
+    protected boolean isLossless(UUID sinkID) {
+        SessionSettings settings = sinkSettings.get(sinkID);
+        return settings != null && settings.isLossless();
+    }
+
+    /**
+     * Gets whether a sink supports a payload codec
+     *
+     * @param sinkID  ID of sink
+     * @param codecID Codec ID (see PayloadCodecs)
+     * @return True if the codec was negotiated with the sink (false if the sink hasn't negotiated)
+     */
+    protected boolean supportsCodec(UUID sinkID, int codecID) {
+        SessionSettings settings = sinkSettings.get(sinkID);
+        return settings != null && settings.supports(codecID);
+    }
+
+    /**
+     * Gets the IDs of the payload codecs a sink supports
+     *
+     * @param sinkID ID of sink
+     * @return Codec IDs (null if the sink hasn't negotiated)
+     */
+    private int[] getCodecs(UUID sinkID) {
+        SessionSettings settings = sinkSettings.get(sinkID);
+        return (settings == null) ? null : settings.getCodecs();
+    }
+
+    /**
+     * Gets whether a sink reads notifications in the compact form
+     *
+     * @param sinkID ID of sink
+     * @return True if the sink negotiated the compact form
+     */
+    private boolean isCompact(UUID sinkID) {
+        SessionSettings settings = sinkSettings.get(sinkID);
+        return settings != null && settings.isCompact();
+    }
+
+    /**
+     * Re-registers a sink after it lost its connection, resuming delivery after the last notification it received.
+     * If the notifications it missed are no longer in its history, the sink is sent the current state instead.
+     *
+     * @param sinkID       ID of sink
+     * @param sink         Sink to register
+     * @param lastSequence Sequence number of the last notification the sink received from this source
+     * @return Sequence number delivery continues after: lastSequence if the session was resumed, 0 if a new session
+     * was started
+     * @throws RemoteException
+     */
+    @Override
+    public long resume(UUID sinkID, INotificationSink sink, long lastSequence) throws RemoteException, RegisterFailException {
+        SinkHistory history = (sinkID == null) ? null : this.sinkHistories.get(sinkID);
+        if (history == null || !isRegistered(sinkID)) {
+            // Nothing to resume (e.g. we restarted, so our sequence numbers have too), so start a new session
+            register(sinkID, sink);
+            return 0;
+        }
+
+        this.registeredSinks.put(sinkID, sink);
+        List<Notification<?>> missed = history.getAfter(lastSequence);
+        if (missed == null) {
+            Log.Info(String.format("Sink resumed: %s, missed notifications have expired, sending current state", UUIDUtils.UUIDToBase64String(sinkID)));
+            sinkRegistered(sinkID);
+        } else {
+            Log.Info(String.format("Sink resumed: %s, resending %d notifications", UUIDUtils.UUIDToBase64String(sinkID), missed.size()));
+            queueDelivery(sinkID, new ReplayProcessor(sinkID, missed));
+        }
+        return lastSequence;
+    }
+
+    /**
+     * Gets the next sequence number for a notification from this source.
+     * Sources that send the same event to sinks as different notifications (e.g. renditions of a frame) should use
+     * one sequence number for all of them.
+     *
+     * @return Sequence number
+     */
+    protected long nextSequence() {
+        return this.sequence.incrementAndGet();
+    }
+
+    /**
+     * Registers a codec for the payloads this source sends; sinks must register a codec with the same ID to read them.
+     * Payloads without a codec are sent as byte[]/ByteBuffer if they are binary, else with Java serialisation.
+     *
+     * @param codec Codec
+     */
+    protected void registerCodec(PayloadCodec<?> codec) {
+        PayloadCodecs.register(this.sourceID, codec);
+    }
+
+    /**
+     * Registers a sink to receive shared.util.notifications
+     *
+     * @param sinkID   ID of sink
+     * @param sink     Sink to register
+     * @param viewport Size of the area the sink displays notifications in (null if unknown)
+     * @return True if Sink was successfully registered
+     * @throws RemoteException
+     */
+    @Override
+    public boolean register(UUID sinkID, INotificationSink sink, Dimension viewport) throws RemoteException, RegisterFailException {
+        if (sinkID == null) sinkID = getUUID();
+        setViewport(sinkID, viewport);
+        return register(sinkID, sink);
+    }
+
+    /**
+     * Updates the size of the area a sink displays notifications in
+     *
+     * @param sinkID   ID of sink
+     * @param viewport Size of the area the sink displays notifications in (null if unknown)
+     * @throws RemoteException
+     */
+    @Override
+    public void setViewport(UUID sinkID, Dimension viewport) throws RemoteException {
+        if (sinkID == null) return;
+        if (viewport == null) {
+            this.sinkViewports.remove(sinkID);
+        } else {
+            this.sinkViewports.put(sinkID, viewport);
+            Log.Debug(String.format("Sink viewport for %s: %dx%d", UUIDUtils.UUIDToBase64String(sinkID), viewport.width, viewport.height));
+        }
+    }
+
+    /**
+     * Gets the size of the area a sink displays notifications in
+     *
+     * @param sinkID ID of sink
+     * @return Viewport size, or null if the sink hasn't told us
+     */
+    protected Dimension getViewport(UUID sinkID) {
+        return this.sinkViewports.get(sinkID);
+    }
+
+    /**
+     * Subscribes a sink to a named variant of the source's notifications
+     *
+     * @param sinkID  ID of sink
+     * @param variant Name of variant (null for the default)
+     * @throws RemoteException
+     */
+    @Override
+    public void setVariant(UUID sinkID, String variant) throws RemoteException {
+        if (sinkID == null) return;
+        if (variant == null) {
+            this.sinkVariants.remove(sinkID);
+        } else {
+            this.sinkVariants.put(sinkID, variant);
+            Log.Debug(String.format("Sink variant for %s: %s", UUIDUtils.UUIDToBase64String(sinkID), variant));
+        }
+    }
+
+    /**
+     * Gets the variant a sink has subscribed to
+     *
+     * @param sinkID ID of sink
+     * @return Variant name, or null for the default
+     */
+    protected String getVariant(UUID sinkID) {
+        return this.sinkVariants.get(sinkID);
+    }
+
+    /**
+     * Pauses/resumes delivery to a sink (e.g. when the sink's display is hidden)
+     *
+     * @param sinkID ID of sink
+     * @param paused True to pause delivery, false to resume it
+     * @throws RemoteException
+     */
+    @Override
+    public void setPaused(UUID sinkID, boolean paused) throws RemoteException {
+        if (sinkID == null || !isRegistered(sinkID)) return;
+        if (paused) {
+            if (this.pausedSinks.add(sinkID)) {
+                Log.Debug(String.format("Sink paused: %s", UUIDUtils.UUIDToBase64String(sinkID)));
+            }
+        } else if (this.pausedSinks.remove(sinkID)) {
+            Log.Debug(String.format("Sink resumed: %s", UUIDUtils.UUIDToBase64String(sinkID)));
+            sinkResumed(sinkID);
+        }
+    }
+
+    /**
+     * Returns whether a sink has asked for delivery to be paused
+     *
+     * @param sinkID ID of sink
+     * @return True if paused
+     */
+    protected boolean isPaused(UUID sinkID) {
+        return this.pausedSinks.contains(sinkID);
+    }
+
+    /**
+     * Called when a paused sink has resumed.
+     * Sources that stream state should override this to send the sink the current state straight away.
+     *
+     * @param sinkID ID of sink
+     */
+    protected void sinkResumed(UUID sinkID) {
+    }
+
+    /**
+     * Called when a sink has (re)registered.
+     * Sources that stream state should override this to send the sink the current state straight away,
+     * rather than waiting for the next notification.
+     *
+     * @param sinkID ID of sink
+     */
+    protected void sinkRegistered(UUID sinkID) {
+    }
+
+    /**
+     * Gets the highest (worst quality) delivery level this source supports.
+     * Sources that can adapt what they send (lower resolution, fewer frames, etc) should override this.
+     *
+     * @return Highest level (0 = no adaptation)
+     */
+    protected int getMaxLevel() {
+        return 0;
+    }
+
+    /**
+     * Gets the delivery controller for a sink
+     *
+     * @param sinkID ID of sink
+     * @return Controller, or null if the sink isn't registered
+     */
+    protected SinkController getController(UUID sinkID) {
+        return this.sinkControllers.get(sinkID);
+    }
+
+    /**
+     * Gets the IDs of the sinks registered to this source
+     *
+     * @return Set of SinkIDs
+     */
+    protected Set<UUID> getRegisteredSinks() {
+        return this.registeredSinks.keySet();
+    }
+
     /**
      * Returns whether a sink is registered or not
      *
@@ -270,7 +640,14 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
     public boolean unRegister(UUID sinkID) throws RemoteException {
         if (isRegistered(sinkID)) {
             this.registeredSinks.remove(sinkID);
-            this.notificationQueue.remove(sinkID);
+            this.sinkHistories.remove(sinkID);
+            this.sinkViewports.remove(sinkID);
+            this.sinkVariants.remove(sinkID);
+            this.sinkSettings.remove(sinkID);
+            this.sinkQueues.remove(sinkID);
+            this.pausedSinks.remove(sinkID);
+            SinkController controller = this.sinkControllers.remove(sinkID);
+            if (controller != null) Log.Debug(controller.toString());
             Log.Info("Sink unregistered: " + UUIDUtils.UUIDToBase64String(sinkID));
         }
         return isRegistered(sinkID);
@@ -311,26 +688,55 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
     }
 
     /**
-     * Sends the queue of missed notifications to the sink
-     * @param sinkID
+     * Resends the notifications that failed to be delivered to a sink (those still in its history)
+     *
+     * @param sinkID Sink to resend to
+     * @return True if they were all sent
      */
-    private void sendQueue(UUID sinkID) {
-        // Get the sink, and the sink's queue
-        INotificationSink sink = this.registeredSinks.get(sinkID);
-        ConcurrentLinkedQueue<Notification> queue = this.notificationQueue.get(sinkID);
+    private boolean sendUndelivered(UUID sinkID) {
+        SinkHistory history = this.sinkHistories.get(sinkID);
+        if (history == null || !history.hasUndelivered()) return true;
+        return replay(sinkID, history.takeUndelivered());
+    }
 
-        // Send all the notifications in the queue
-        // We are peeking to get the notification, then after we know it's been sent, removing it
-        Notification notification;
-        while ((notification = queue.peek()) != null) {
+    /**
+     * Sends notifications to a sink in order, stopping at the first that fails.
+     * Sinks that support batching are sent them in batches, rather than a call each.
+     *
+     * @param sinkID        Sink to send to
+     * @param notifications Notifications (in sequence order)
+     * @return True if they were all sent
+     */
+    private boolean replay(UUID sinkID, List<Notification<?>> notifications) {
+        INotificationSink sink = this.registeredSinks.get(sinkID);
+        SinkHistory history = this.sinkHistories.get(sinkID);
+        SinkController controller = this.sinkControllers.get(sinkID);
+        SessionSettings settings = this.sinkSettings.get(sinkID);
+        if (sink == null || history == null) return false;
+
+        long latency = (controller != null) ? controller.getLatency() : 0;
+        int[] codecs = getCodecs(sinkID);
+        boolean compact = isCompact(sinkID);
+        int batchSize = (settings != null && settings.isBatching()) ? MAX_BATCH : 1;
+        for (int start = 0; start < notifications.size(); start += batchSize) {
+            List<Notification<?>> batch = notifications.subList(start, Math.min(start + batchSize, notifications.size()));
             try {
-                sink.notify(notification);
-                queue.remove();
+                if (batch.size() == 1) {
+                    sink.notify(batch.get(0).dispatch(latency, codecs, compact));
+                } else {
+                    List<Notification<?>> dispatched = new ArrayList<>(batch.size());
+                    for (Notification<?> notification : batch) {
+                        dispatched.add(notification.dispatch(latency, codecs, compact));
+                    }
+                    sink.notifyBatch(dispatched);
+                }
             } catch (RemoteException e) {
                 Log.Warn("Failed to send message to: " + UUIDUtils.UUIDToBase64String(sinkID));
-                break;
+                history.failed(batch.get(0).getSequence());
+                return false;
             }
         }
+        return true;
     }
 
     /**
@@ -339,44 +745,126 @@ public abstract class NotificationSource extends UnicastRemoteObject implements
      *
      * @param notification Notification to send
      */
-    protected void sendNotification(Notification notification) {
-        registeredSinks.entrySet().forEach(map -> dispatchEvent(new NotificationProcessor(map, notification)));
+    protected void sendNotification(Notification<?> notification) {
+        Notification<?> sequenced = (notification.getSequence() == 0) ? notification.sequence(nextSequence()) : notification;
+        registeredSinks.entrySet().forEach(map -> sendNotification(map.getKey(), map.getValue(), sequenced));
+    }
+
+    /**
+     * Sends a notification to a single registered sink, or if sending failed,
+     * queues it to be sent at a later date.
+     * Notifications that re-send an event (e.g. the current state to a sink that just registered) should carry the
+     * event's sequence number; unsequenced ones take the next number, which every other sink sees as a gap.
+     *
+     * @param sinkID       Sink to send the notification to
+     * @param notification Notification to send
+     */
+    protected void sendNotification(UUID sinkID, Notification<?> notification) {
+        INotificationSink sink = registeredSinks.get(sinkID);
+        if (sink == null) return;
+        sendNotification(sinkID, sink, (notification.getSequence() == 0) ? notification.sequence(nextSequence()) : notification);
+    }
+
+    /**
+     * Records a sequenced notification in a sink's history, then dispatches it to the sink
+     *
+     * @param sinkID       ID of sink
+     * @param sink         Sink to send the notification to
+     * @param notification Sequenced notification
+     */
+    private void sendNotification(UUID sinkID, INotificationSink sink, Notification<?> notification) {
+        Object data = notification.getData();
+        if (data != null && PayloadCodecs.getCodec(sourceID, data, getCodecs(sinkID)) == null) {
+            Log.Warn(String.format("Can't send %s to %s, it can't read them", data.getClass().getSimpleName(), UUIDUtils.UUIDToBase64String(sinkID)));
+            return;
+        }
+        SinkHistory history = sinkHistories.get(sinkID);
+        if (history != null) history.add(notification);
+        queueDelivery(sinkID, new NotificationProcessor(sinkID, sink, notification));
     }
 
     /**
-     * Queues a notification for delivery at a later date if the notification could not be delivered
+     * Queues a delivery to a sink, to run in the worker pool after the deliveries already queued to it
      *
-     * @param sinkID       Sink that could not be reached
-     * @param notification Notification that could not be sent
+     * @param sinkID   ID of sink
+     * @param delivery Delivery to run
      */
-    private void queueNotification(UUID sinkID, Notification notification) {
-        this.notificationQueue.get(sinkID).add(notification);
+    private void queueDelivery(UUID sinkID, RunnableAdapter delivery) {
+        sinkQueues.computeIfAbsent(sinkID, k -> new SinkQueue()).queue(delivery);
     }
 
     private class NotificationProcessor extends RunnableAdapter {
 
         UUID sinkID;
         INotificationSink sink;
-        Notification notification;
+        Notification<?> notification;
+        SinkController controller;
 
-        public NotificationProcessor(Map.Entry<UUID, INotificationSink> sinkEntry, Notification notification){
-            sinkID = sinkEntry.getKey();
-            sink = sinkEntry.getValue();
+        public NotificationProcessor(UUID sinkID, INotificationSink sink, Notification<?> notification){
+            this.sinkID = sinkID;
+            this.sink = sink;
             this.notification = notification;
+            this.controller = sinkControllers.get(sinkID);
+            if (controller != null) controller.queued();
         }
         @Override
         public void runSafe() throws Exception {
+            boolean sent = false;
+            SinkHistory history = sinkHistories.get(sinkID);
             try {
                 Log.Trace("Sending message to: " + UUIDUtils.UUIDToBase64String(sinkID));
-                sink.notify(notification);
-
-                // If we successfully sent a notification, check if the queue is empty, if not, empty it (as we can now send notifications)
-                if(notificationQueue.get(sinkID).size() != 0){
-                    sendQueue(sinkID);
+                long start = System.nanoTime();
+                if (history != null && history.hasUndelivered()) {
+                    // Earlier notifications failed to send, so catch up in order (this one included), as the sink
+                    // discards anything older than what it has already received
+                    history.failed(notification.getSequence());
+                    sent = sendUndelivered(sinkID);
+                } else {
+                    sink.notify(notification.dispatch((controller != null) ? controller.getLatency() : 0, getCodecs(sinkID), isCompact(sinkID)));
+                    sent = true;
+                }
+                if (sent && controller != null) {
+                    controller.delivered(System.nanoTime() - start, PayloadCodecs.getLength(notification.getData()));
                 }
             } catch (RemoteException e) {
-                Log.Warn(String.format("Failed to send message to: %s. Queuing for delivery later. ", UUIDUtils.UUIDToBase64String(sinkID)));
-                queueNotification(sinkID, notification);
+                Log.Warn(String.format("Failed to send message to: %s. Keeping for delivery later. ", UUIDUtils.UUIDToBase64String(sinkID)));
+                if (history != null) history.failed(notification.getSequence());
+            } finally {
+                if (!sent && controller != null) controller.failed();
+            }
+        }
+    }
+
+    /**
+     * Resends notifications from a sink's history
+     */
+    private class ReplayProcessor extends RunnableAdapter {
+
+        UUID sinkID;
+        List<Notification<?>> notifications;
+
+        public ReplayProcessor(UUID sinkID, List<Notification<?>> notifications) {
+            this.sinkID = sinkID;
+            this.notifications = notifications;
+        }
+
+        @Override
+        public void runSafe() throws Exception {
+            replay(sinkID, notifications);
+        }
+    }
+
+    /**
+     * Periodically logs the delivery metrics (level, transport latency, throughput, ...) of each sink
+     */
+    private class MetricsReporter extends RunnableAdapter {
+        static final long INTERVAL = 10 * 1000;
+
+        @Override
+        public void runSafe() throws Exception {
+            sinkControllers.values().forEach(c -> Log.Info(String.format("%s: %s", sourceID, c)));
+            if (NotificationSource.workPool != null && NotificationSource.workPool.isRunning()) {
+                NotificationSource.workPool.scheduleTask(this, INTERVAL);
             }
         }
     }
@@ -0,0 +1,162 @@
+package server;
+
+import java.awt.*;
+import java.nio.ByteBuffer;
+
+/**
+ * A rendition of a stream at a particular resolution
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class Rendition {
+
+    private final int width;
+    private final int height;
+
+    /**
+     * Frames of the rendition (encoded, so they can be sent without re-encoding)
+     */
+    private final ByteBuffer[] frames;
+
+    /**
+     * Tiled frames (see ImageUtils.imageToTiledBytes), for sinks that can decode them (null if the rendition is too
+     * small to be worth tiling)
+     */
+    private volatile ByteBuffer[] tiledFrames;
+
+    /**
+     * Whether frames are stored off the heap
+     */
+    private final boolean offHeap;
+
+    public Rendition(int width, int height, int numberOfFrames) {
+        this(width, height, numberOfFrames, Config.isOffHeapFrames());
+    }
+
+    public Rendition(int width, int height, int numberOfFrames, boolean offHeap) {
+        this.width = width;
+        this.height = height;
+        this.frames = new ByteBuffer[numberOfFrames];
+        this.offHeap = offHeap;
+    }
+
+    /**
+     * Get the width of the rendition
+     *
+     * @return Width
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Get the height of the rendition
+     *
+     * @return Height
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns whether the rendition fills a viewport without being scaled up
+     *
+     * @param viewport Viewport size
+     * @return True if the rendition is at least as big as the viewport (when scaled to fit)
+     */
+    public boolean fills(Dimension viewport) {
+        double scale = Math.min((double) viewport.width / width, (double) viewport.height / height);
+        return scale <= 1d;
+    }
+
+    /**
+     * Get the number of frames in the rendition
+     *
+     * @return Number of frames
+     */
+    public int getFrameCount() {
+        return frames.length;
+    }
+
+    /**
+     * Returns whether the rendition has tiled frames
+     *
+     * @return True if the frames are also stored tiled
+     */
+    public boolean isTiled() {
+        return tiledFrames != null;
+    }
+
+    /**
+     * Gets a frame, as a view sharing the frame's bytes (so it can be sent without copying)
+     *
+     * @param index Frame number
+     * @return Frame bytes
+     */
+    public ByteBuffer getFrame(int index) {
+        return frames[index].duplicate();
+    }
+
+    /**
+     * Gets a frame, tiled if the rendition has tiled frames and the sink can decode them
+     *
+     * @param index Frame number
+     * @param tiled Whether the sink can decode tiled frames
+     * @return Frame bytes
+     */
+    public ByteBuffer getFrame(int index, boolean tiled) {
+        return (tiled && isTiled()) ? tiledFrames[index].duplicate() : getFrame(index);
+    }
+
+    /**
+     * Sets a frame
+     *
+     * @param index Frame number
+     * @param frame Frame bytes
+     */
+    public void setFrame(int index, byte[] frame) {
+        frames[index] = store(frame);
+    }
+
+    /**
+     * Sets the tiled version of a frame
+     *
+     * @param index Frame number
+     * @param frame Tiled frame bytes
+     */
+    public synchronized void setTiledFrame(int index, byte[] frame) {
+        if (tiledFrames == null) {
+            tiledFrames = new ByteBuffer[frames.length];
+        }
+        tiledFrames[index] = store(frame);
+    }
+
+    /**
+     * Wraps frame bytes, copying them off the heap if required
+     *
+     * @param frame Frame bytes
+     * @return Buffer
+     */
+    private ByteBuffer store(byte[] frame) {
+        if (offHeap) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(frame.length);
+            buffer.put(frame).flip();
+            return buffer;
+        }
+        return ByteBuffer.wrap(frame);
+    }
+
+    /**
+     * Makes a frame share the bytes of an identical frame
+     *
+     * @param index Frame number
+     * @param from  Frame number of the identical frame (which must already be set)
+     */
+    public void shareFrame(int index, int from) {
+        frames[index] = frames[from];
+        if (isTiled()) {
+            tiledFrames[index] = tiledFrames[from];
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package server;
+
+import shared.util.Log;
+import shared.util.UUIDUtils;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Adaptive delivery controller for a sink.
+ * Measures how long it takes to deliver notifications to the sink, and moves the sink up/down a ladder of
+ * quality levels (0 = best) so that delivery latency stays within the target.
+ * What a level means is up to the source (lower rendition, skipping frames, etc).
+ * <p>
+ * The latency is transport only: the time sink.notify takes to return, which covers serialising the notification
+ * and sending it to the sink. Sinks queue notifications and return before decoding them, so a sink that is slow to
+ * decode or paint isn't seen here (its mailbox drops frames instead); a slow link is.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SinkController {
+
+    /**
+     * Weight given to the newest sample in the moving averages
+     */
+    private static final double SMOOTHING = 0.2;
+
+    /**
+     * Number of samples to wait after switching level before switching down again
+     */
+    private static final int DOWNGRADE_COOLDOWN = 5;
+
+    /**
+     * Number of consecutive fast samples needed before switching up a level
+     */
+    private static final int UPGRADE_SAMPLES = 30;
+
+    /**
+     * Maximum number of notifications that may be in flight to a sink before it is considered backlogged
+     */
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private final UUID sinkID;
+    private final long targetLatency;
+    private final int maxLevel;
+
+    private volatile int level = 0;
+    private double latency = -1;
+    private double throughput = 0;
+    private int samplesSinceSwitch = 0;
+    private int fastSamples = 0;
+
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final AtomicLong delivered = new AtomicLong(0);
+    private final AtomicLong dropped = new AtomicLong(0);
+    private final AtomicLong failed = new AtomicLong(0);
+    private final AtomicLong switches = new AtomicLong(0);
+
+    /**
+     * Creates a controller for a sink
+     *
+     * @param sinkID        Sink to control
+     * @param targetLatency Target delivery latency (in milliseconds)
+     * @param maxLevel      Highest (worst quality) level the source supports
+     */
+    public SinkController(UUID sinkID, long targetLatency, int maxLevel) {
+        this.sinkID = sinkID;
+        this.targetLatency = targetLatency * 1000000L;
+        this.maxLevel = maxLevel;
+    }
+
+    /**
+     * Gets the current quality level of the sink
+     *
+     * @return Level (0 = best)
+     */
+    public int getLevel() {
+        return level;
+    }
+
+    /**
+     * Returns whether the sink is still busy with previous notifications, in which case droppable
+     * notifications (e.g. stream frames) should not be sent.
+     *
+     * @return True if the sink is backlogged
+     */
+    public boolean isBacklogged() {
+        return inFlight.get() >= MAX_IN_FLIGHT;
+    }
+
+    /**
+     * Records that a notification has been queued for delivery to the sink.
+     * Must be followed by a call to {@link #delivered(long, int)} or {@link #failed()}.
+     */
+    public void queued() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Records that a notification was not sent because the sink was backlogged
+     */
+    public void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Records a successful delivery
+     *
+     * @param nanos Time taken to deliver the notification (in nanoseconds)
+     * @param bytes Size of the notification payload
+     */
+    public void delivered(long nanos, int bytes) {
+        inFlight.decrementAndGet();
+        delivered.incrementAndGet();
+
+        synchronized (this) {
+            if (latency < 0) {
+                latency = nanos;
+            } else {
+                latency = SMOOTHING * nanos + (1 - SMOOTHING) * latency;
+            }
+            if (nanos > 0) {
+                throughput = SMOOTHING * (bytes * 1e9 / nanos) + (1 - SMOOTHING) * throughput;
+            }
+            samplesSinceSwitch++;
+
+            if (latency > targetLatency) {
+                fastSamples = 0;
+                if (level < maxLevel && samplesSinceSwitch >= DOWNGRADE_COOLDOWN) {
+                    setLevel(level + 1);
+                }
+            } else if (latency < targetLatency / 2) {
+                fastSamples++;
+                if (level > 0 && fastSamples >= UPGRADE_SAMPLES) {
+                    setLevel(level - 1);
+                }
+            } else {
+                fastSamples = 0;
+            }
+        }
+    }
+
+    /**
+     * Gets the smoothed time taken to deliver a notification to the sink (transport only)
+     *
+     * @return Round trip time (in nanoseconds), 0 if nothing has been delivered yet
+     */
+    public synchronized long getLatency() {
+        return (long) Math.max(latency, 0);
+    }
+
+    /**
+     * Records a failed delivery
+     */
+    public void failed() {
+        inFlight.decrementAndGet();
+        failed.incrementAndGet();
+    }
+
+    /**
+     * Switches level
+     *
+     * @param newLevel Level to switch to
+     */
+    private void setLevel(int newLevel) {
+        Log.Info(String.format("Sink %s: level %d -> %d (transport latency: %.1fms, target: %dms)",
+                UUIDUtils.UUIDToBase64String(sinkID), level, newLevel, latency / 1e6, targetLatency / 1000000L));
+        level = newLevel;
+        switches.incrementAndGet();
+        samplesSinceSwitch = 0;
+        fastSamples = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("sink: %s, level: %d/%d, transport latency: %.1fms, throughput: %.1fKB/s, delivered: %d, dropped: %d, failed: %d, switches: %d",
+                UUIDUtils.UUIDToBase64String(sinkID), level, maxLevel, Math.max(latency, 0) / 1e6, throughput / 1024d,
+                delivered.get(), dropped.get(), failed.get(), switches.get());
+    }
+}
@@ -0,0 +1,116 @@
+package server;
+
+import shared.Notification;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bounded history of the sequenced notifications sent to a sink.
+ * Lets a sink that lost its connection resume from the last notification it saw, rather than the source
+ * queueing everything it missed (without limit) or nothing at all.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SinkHistory {
+
+    private final int capacity;
+    private final ArrayDeque<Notification<?>> retained;
+
+    /**
+     * Sequence number of the newest notification that has been evicted from the history
+     */
+    private long evicted = 0;
+
+    /**
+     * Sequence number of the oldest notification that failed to be delivered (Long.MAX_VALUE if none)
+     */
+    private long undelivered = Long.MAX_VALUE;
+
+    public SinkHistory(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.retained = new ArrayDeque<>(this.capacity);
+    }
+
+    /**
+     * Adds a notification to the history, evicting the oldest if the history is full.
+     * Notifications should be added in the order they are sent.
+     *
+     * @param notification Sequenced notification
+     */
+    public synchronized void add(Notification<?> notification) {
+        if (retained.size() >= capacity) {
+            evicted = Math.max(evicted, retained.poll().getSequence());
+        }
+        retained.add(notification);
+    }
+
+    /**
+     * Records a notification that failed to be delivered, so it can be redelivered later
+     *
+     * @param sequence Sequence number of the notification
+     */
+    public synchronized void failed(long sequence) {
+        undelivered = Math.min(undelivered, sequence);
+    }
+
+    /**
+     * Returns whether there are notifications that failed to be delivered
+     *
+     * @return True if redelivery is needed
+     */
+    public synchronized boolean hasUndelivered() {
+        return undelivered != Long.MAX_VALUE;
+    }
+
+    /**
+     * Takes the notifications to redeliver after failed deliveries: those from the oldest failure onwards that are
+     * still retained. The sink discards any it already received.
+     *
+     * @return Notifications to redeliver (in sequence order)
+     */
+    public synchronized List<Notification<?>> takeUndelivered() {
+        if (undelivered == Long.MAX_VALUE) return new ArrayList<>();
+        List<Notification<?>> notifications = getRetained(undelivered - 1);
+        undelivered = Long.MAX_VALUE;
+        return notifications;
+    }
+
+    /**
+     * Gets the notifications after a sequence number, if the history still holds all of them
+     *
+     * @param sequence Last sequence number the sink received
+     * @return Notifications after the sequence number (in sequence order), or null if some have been evicted
+     */
+    public synchronized List<Notification<?>> getAfter(long sequence) {
+        if (sequence < evicted) return null;
+        undelivered = Long.MAX_VALUE;
+        return getRetained(sequence);
+    }
+
+    /**
+     * Gets the retained notifications after a sequence number
+     *
+     * @param sequence Sequence number
+     * @return Notifications (in sequence order)
+     */
+    private List<Notification<?>> getRetained(long sequence) {
+        List<Notification<?>> notifications = new ArrayList<>();
+        for (Notification<?> notification : retained) {
+            if (notification.getSequence() > sequence) notifications.add(notification);
+        }
+        return notifications;
+    }
+
+    /**
+     * Gets the sequence number of the newest notification in the history
+     *
+     * @return Sequence number, 0 if the history is empty
+     */
+    public synchronized long getLatest() {
+        Notification<?> latest = retained.peekLast();
+        return (latest == null) ? 0 : latest.getSequence();
+    }
+}
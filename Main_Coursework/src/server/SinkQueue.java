@@ -0,0 +1,57 @@
+package server;
+
+import shared.util.RunnableAdapter;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queue of the deliveries to a sink, run in the worker pool one at a time, in the order they were queued.
+ * The worker pool runs events on many threads, so without this, deliveries to the same sink could overlap and arrive
+ * out of order; the sink discards anything older than what it has already received.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SinkQueue {
+
+    private final ConcurrentLinkedQueue<RunnableAdapter> tasks = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Whether a worker is running the queue
+     */
+    private final AtomicBoolean draining = new AtomicBoolean(false);
+
+    private final RunnableAdapter drain = new RunnableAdapter() {
+        @Override
+        public void runSafe() {
+            drain();
+        }
+    };
+
+    /**
+     * Queues a delivery, starting a worker on the queue if there isn't one already
+     *
+     * @param task Delivery to run
+     */
+    public void queue(RunnableAdapter task) {
+        tasks.add(task);
+        if (draining.compareAndSet(false, true)) {
+            NotificationSource.dispatchEvent(drain);
+        }
+    }
+
+    /**
+     * Runs the queued deliveries until the queue is empty
+     */
+    private void drain() {
+        do {
+            RunnableAdapter task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            draining.set(false);
+            // A delivery may have been queued after the last poll, but before the flag was cleared
+        } while (!tasks.isEmpty() && draining.compareAndSet(false, true));
+    }
+}
@@ -0,0 +1,43 @@
+package server.transforms;
+
+import shared.util.PixelKernels;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Crops an image to a rectangle
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class CropTransform implements ITransform {
+
+    private final Rectangle region;
+
+    public CropTransform(int x, int y, int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Crop region must have a positive width and height.");
+        }
+        this.region = new Rectangle(x, y, width, height);
+    }
+
+    @Override
+    public String getKey() {
+        return String.format("crop(%d,%d,%d,%d)", region.x, region.y, region.width, region.height);
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        Rectangle clip = region.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (clip.isEmpty()) {
+            return image;
+        }
+        int[] pixels = PixelKernels.getPixels(image);
+        int[] cropped = new int[clip.width * clip.height];
+        for (int y = 0; y < clip.height; y++) {
+            System.arraycopy(pixels, (clip.y + y) * image.getWidth() + clip.x, cropped, y * clip.width, clip.width);
+        }
+        return PixelKernels.toImage(cropped, clip.width, clip.height);
+    }
+}
@@ -0,0 +1,31 @@
+package server.transforms;
+
+import shared.util.PixelKernels;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * Converts an image to greyscale
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class GreyscaleTransform implements ITransform {
+
+    @Override
+    public String getKey() {
+        return "greyscale";
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        int[] pixels = PixelKernels.getPixels(image).clone();
+        for (int i = 0; i < pixels.length; i++) {
+            int p = pixels[i];
+            // Rec. 601 luma, in fixed point
+            int y = (((p >>> 16) & 0xff) * 77 + ((p >>> 8) & 0xff) * 150 + (p & 0xff) * 29) >>> 8;
+            pixels[i] = (p & 0xff000000) | (y << 16) | (y << 8) | y;
+        }
+        return PixelKernels.toImage(pixels, image.getWidth(), image.getHeight());
+    }
+}
@@ -0,0 +1,28 @@
+package server.transforms;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A stage in a transform pipeline
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public interface ITransform {
+
+    /**
+     * Gets the key that identifies this stage (name and arguments).
+     * Two stages with the same key must produce the same output for the same input.
+     *
+     * @return Key
+     */
+    String getKey();
+
+    /**
+     * Applies the transform to an image
+     *
+     * @param image Image to transform (must not be modified)
+     * @return Transformed image
+     */
+    BufferedImage apply(BufferedImage image);
+}
@@ -0,0 +1,146 @@
+package server.transforms;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * A chain of transform stages that are applied in order
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class TransformChain {
+
+    private final List<ITransform> stages;
+
+    public TransformChain(List<ITransform> stages) {
+        this.stages = new ArrayList<>(stages);
+    }
+
+    /**
+     * Parses a transform chain from a string.
+     * Stages are separated by '|', and each stage is a name with optional arguments:
+     * <code>crop(0,0,320,240) | greyscale | watermark(Huw Jones)</code>
+     *
+     * @param chain Chain to parse
+     * @return Transform chain
+     * @throws IllegalArgumentException Thrown if the chain could not be parsed
+     */
+    public static TransformChain parse(String chain) throws IllegalArgumentException {
+        List<ITransform> stages = new ArrayList<>();
+        for (String stage : chain.split("\\|")) {
+            stage = stage.trim();
+            if (stage.length() == 0) continue;
+            stages.add(parseStage(stage));
+        }
+        return new TransformChain(stages);
+    }
+
+    /**
+     * Parses a transform stage
+     *
+     * @param stage Stage to parse
+     * @return Transform
+     * @throws IllegalArgumentException Thrown if the stage could not be parsed
+     */
+    private static ITransform parseStage(String stage) throws IllegalArgumentException {
+        String name = stage;
+        String arguments = "";
+        int open = stage.indexOf('(');
+        if (open != -1) {
+            if (!stage.endsWith(")")) {
+                throw new IllegalArgumentException("Missing ')' in transform: " + stage);
+            }
+            name = stage.substring(0, open).trim();
+            arguments = stage.substring(open + 1, stage.length() - 1).trim();
+        }
+
+        switch (name.toLowerCase()) {
+            case "greyscale":
+            case "grayscale":
+                return new GreyscaleTransform();
+            case "watermark":
+                if (arguments.length() == 0) {
+                    throw new IllegalArgumentException("watermark requires text.");
+                }
+                return new WatermarkTransform(arguments);
+            case "crop":
+                String[] values = arguments.split(",");
+                if (values.length != 4) {
+                    throw new IllegalArgumentException("crop requires x,y,width,height.");
+                }
+                try {
+                    return new CropTransform(
+                            Integer.parseInt(values[0].trim()),
+                            Integer.parseInt(values[1].trim()),
+                            Integer.parseInt(values[2].trim()),
+                            Integer.parseInt(values[3].trim()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid crop: " + arguments);
+                }
+            default:
+                throw new IllegalArgumentException("Unknown transform: " + name);
+        }
+    }
+
+    /**
+     * Gets the key that identifies this chain. Chains with the same key produce the same output.
+     *
+     * @return Key ("" for an empty chain)
+     */
+    public String getKey() {
+        return getKey(stages.size());
+    }
+
+    /**
+     * Gets the key of the first n stages of the chain
+     *
+     * @param n Number of stages
+     * @return Key
+     */
+    private String getKey(int n) {
+        return stages.subList(0, n).stream().map(ITransform::getKey).collect(Collectors.joining("|"));
+    }
+
+    /**
+     * Gets the stages of the chain
+     *
+     * @return List of stages
+     */
+    public List<ITransform> getStages() {
+        return Collections.unmodifiableList(stages);
+    }
+
+    /**
+     * Applies the chain to an image, using (and filling) a cache of intermediate outputs keyed by chain prefix.
+     * Chains that share a prefix share the work for that prefix, so each unique stage chain is only run once
+     * per image.
+     *
+     * @param image Image to transform
+     * @param cache Cache of outputs for this image (prefix key => output), "" must map to the image itself
+     * @return Transformed image
+     */
+    public BufferedImage apply(BufferedImage image, Map<String, BufferedImage> cache) {
+        // Find the longest prefix that has already been computed
+        int done = stages.size();
+        BufferedImage output = null;
+        for (; done > 0; done--) {
+            output = cache.get(getKey(done));
+            if (output != null) break;
+        }
+        if (output == null) {
+            output = image;
+        }
+
+        // Then compute the rest, caching each step
+        for (int i = done; i < stages.size(); i++) {
+            output = stages.get(i).apply(output);
+            cache.put(getKey(i + 1), output);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,46 @@
+package server.transforms;
+
+import shared.util.PixelKernels;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Draws a text watermark in the bottom right corner of an image
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class WatermarkTransform implements ITransform {
+
+    private final String text;
+
+    public WatermarkTransform(String text) {
+        this.text = text;
+    }
+
+    @Override
+    public String getKey() {
+        return "watermark(" + text + ")";
+    }
+
+    @Override
+    public BufferedImage apply(BufferedImage image) {
+        BufferedImage output = PixelKernels.toImage(PixelKernels.getPixels(image), image.getWidth(), image.getHeight());
+        Graphics2D g2d = output.createGraphics();
+        g2d.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g2d.setFont(new Font(Font.SANS_SERIF, Font.BOLD, Math.max(10, image.getHeight() / 16)));
+
+        FontMetrics metrics = g2d.getFontMetrics();
+        int x = image.getWidth() - metrics.stringWidth(text) - metrics.getDescent();
+        int y = image.getHeight() - metrics.getDescent();
+
+        // Shadow, then text, so the watermark is readable on any background
+        g2d.setColor(new Color(0, 0, 0, 128));
+        g2d.drawString(text, x + 1, y + 1);
+        g2d.setColor(new Color(255, 255, 255, 160));
+        g2d.drawString(text, x, y);
+        g2d.dispose();
+        return output;
+    }
+}
@@ -144,6 +144,31 @@ public class PatchedGIFImageReader extends ImageReader {
         return numImages;
     }
 
+    /**
+     * Scans the whole stream once and returns the frame offset index.
+     * Entry i is the stream position of the metadata for image i, the final entry is the position of the trailer.
+     *
+     * @return Frame offset index
+     * @throws IIOException Thrown if the stream could not be scanned
+     */
+    public List<Long> getImageStartPositions() throws IIOException {
+        getNumImages(true);
+        return new ArrayList<>(imageStartPosition);
+    }
+
+    /**
+     * Seeds this reader with a frame offset index built by another reader on the same file,
+     * so any image can be located with a single seek instead of skipping every image before it.
+     *
+     * @param positions Frame offset index (as returned by {@link #getImageStartPositions()})
+     * @throws IIOException Thrown if the header could not be read
+     */
+    public void setImageStartPositions(List<Long> positions) throws IIOException {
+        readHeader();
+        this.imageStartPosition = new ArrayList<>(positions);
+        this.numImages = positions.size() - 1;
+    }
+
     // Throw an IndexOutOfBoundsException if index < minIndex,
     // and bump minIndex if required.
     private void checkIndex(int imageIndex) {
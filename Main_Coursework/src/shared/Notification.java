@@ -1,35 +1,178 @@
 package shared;
 
+import shared.codec.PayloadCodec;
+import shared.codec.PayloadCodecs;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.sql.Timestamp;
-import java.util.Calendar;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Notification Class
+ * <p>
+ * Notifications have two serialised forms:
+ * <ul>
+ * <li>Legacy: the form the original Notification class was serialised in (source, data, time and priority, with
+ * the same serialVersionUID), which every peer can read. Sequence numbers and traces aren't sent.</li>
+ * <li>Compact: a hand written encoding, used when a notification is dispatched to a sink that negotiated it (see
+ * SessionSettings.isCompact), so each one doesn't carry the class descriptors of its fields (Timestamp, Date,
+ * PRIORITY, Trace).</li>
+ * </ul>
+ * The compact encoding is:
+ * <pre>
+ * version      byte
+ * flags        byte (has trace)
+ * source       varint length + UTF-8
+ * time         long (milliseconds since the epoch)
+ * priority     byte
+ * sequence     varint
+ * trace        4 longs (if flagged)
+ * codec        byte (see PayloadCodecs, 0 if there is no data)
+ * data         written by the codec
+ * </pre>
+ * Data is encoded by the codec registered for its source and type, falling back to Java serialisation, so it
+ * needn't be Serializable if a codec handles it (e.g. ByteBuffers). In the legacy form, binary data is sent as a
+ * byte[].
  *
  * @author Huw Jones
  * @since 21/11/2016
  */
-public class Notification<T extends Serializable> implements Serializable {
-    private static long serialUID = -783483475;
+public class Notification<T> implements Serializable {
+    /**
+     * serialVersionUID of the original Notification class, so peers built with it can read the legacy form
+     */
+    private static final long serialVersionUID = 3291082840918536767L;
+
+    /**
+     * Fields of the legacy form, as the original Notification class declared them
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {
+            new ObjectStreamField("source", String.class),
+            new ObjectStreamField("data", Serializable.class),
+            new ObjectStreamField("time", Timestamp.class),
+            new ObjectStreamField("priority", PRIORITY.class)
+    };
 
-    private final String source;
-    private final T data;
-    private final Timestamp time;
-    private final PRIORITY priority;
+    /**
+     * Version of the encoding
+     */
+    private static final byte VERSION = 2;
+
+    private static final int FLAG_TRACE = 0x1;
+
+    /**
+     * Source names that have been decoded, so every notification from a source shares one String
+     */
+    private static final ConcurrentHashMap<String, String> sourceNames = new ConcurrentHashMap<>();
+
+    private String source;
+    private T data;
+    private long time;
+    private PRIORITY priority;
+    private Trace trace;
+    private long sequence;
+
+    /**
+     * IDs of the payload codecs the receiving sink supports (null for any); not sent
+     */
+    private int[] codecs;
+
+    /**
+     * Whether the notification is written in the compact form; not sent
+     */
+    private boolean compact;
+
+    /**
+     * Creates an empty notification to be read in (for deserialisation only)
+     */
+    private Notification() {
+    }
 
     public Notification(String source, T data) {
-        this.source = source;
-        this.priority = PRIORITY.Normal;
-        this.data = data;
-        this.time = new Timestamp(Calendar.getInstance().getTime().getTime());
+        this(source, PRIORITY.Normal, data, 0);
+    }
+
+    public Notification(String source, T data, long sequence) {
+        this(source, PRIORITY.Normal, data, sequence);
     }
 
     public Notification(String source, PRIORITY priority, T data) {
+        this(source, priority, data, 0);
+    }
+
+    private Notification(String source, PRIORITY priority, T data, long sequence) {
         this.source = source;
         this.priority = priority;
         this.data = data;
-        this.time = new Timestamp(Calendar.getInstance().getTime().getTime());
+        this.time = System.currentTimeMillis();
+        this.trace = Trace.produce();
+        this.sequence = sequence;
+    }
+
+    private Notification(Notification<T> notification, Trace trace, long sequence, int[] codecs, boolean compact) {
+        this.source = notification.source;
+        this.priority = notification.priority;
+        this.data = notification.data;
+        this.time = notification.time;
+        this.trace = trace;
+        this.sequence = sequence;
+        this.codecs = codecs;
+        this.compact = compact;
+    }
+
+    /**
+     * Creates a copy of the notification (sharing the data) with a sequence number
+     * @param sequence Sequence number
+     * @return Sequenced notification
+     */
+    public Notification<T> sequence(long sequence) {
+        return new Notification<>(this, trace, sequence, codecs, compact);
+    }
+
+    /**
+     * Creates a copy of the notification (sharing the data) with its trace stamped as dispatched to a sink
+     * @param roundTrip Recent round trip time to the sink (in nanoseconds, 0 if unknown)
+     * @return Notification to send to the sink
+     */
+    public Notification<T> dispatch(long roundTrip) {
+        return dispatch(roundTrip, codecs, compact);
+    }
+
+    /**
+     * Creates a copy of the notification (sharing the data) with its trace stamped as dispatched to a sink,
+     * which will be written in the form and with only the payload codecs the sink supports
+     * @param roundTrip Recent round trip time to the sink (in nanoseconds, 0 if unknown)
+     * @param codecs IDs of the payload codecs the sink supports (null for any)
+     * @param compact True to write the compact form, false for the legacy form
+     * @return Notification to send to the sink
+     */
+    public Notification<T> dispatch(long roundTrip, int[] codecs, boolean compact) {
+        return new Notification<>(this, (trace == null) ? null : trace.dispatch(roundTrip), sequence, codecs, compact);
+    }
+
+    /**
+     * Get the sequence number of the notification; numbers from a source only ever increase
+     * @return Sequence number, 0 if the notification isn't sequenced
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the latency trace of the notification
+     * @return Trace (null if the notification came from a source that doesn't trace)
+     */
+    public Trace getTrace() {
+        return trace;
     }
 
     /**
@@ -50,6 +193,14 @@ public class Notification<T extends Serializable> implements Serializable {
      * @return Time notification was sent
      */
     public Timestamp getTime() {
+        return new Timestamp(time);
+    }
+
+    /**
+     * Get the time the notification was sent
+     * @return Time notification was sent (in milliseconds since the epoch)
+     */
+    public long getTimeMillis() {
         return time;
     }
 
@@ -69,6 +220,161 @@ public class Notification<T extends Serializable> implements Serializable {
         return data;
     }
 
+    /**
+     * Writes the compact form in place of the notification, if it was dispatched with it
+     *
+     * @return Object to serialise
+     */
+    private Object writeReplace() {
+        return compact ? new Compact(this) : this;
+    }
+
+    /**
+     * Writes the legacy form
+     *
+     * @param out Output
+     * @throws IOException
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        Object payload = (data instanceof Serializable) ? data : PayloadCodecs.getBytes(data);
+        if (payload == null && data != null) {
+            throw new NotSerializableException(data.getClass().getName());
+        }
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("source", source);
+        fields.put("data", payload);
+        fields.put("time", new Timestamp(time));
+        fields.put("priority", priority);
+        out.writeFields();
+    }
+
+    /**
+     * Reads the legacy form
+     *
+     * @param in Input
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        this.source = (String) fields.get("source", null);
+        this.data = (T) fields.get("data", null);
+        Timestamp time = (Timestamp) fields.get("time", null);
+        this.time = (time == null) ? 0 : time.getTime();
+        this.priority = (PRIORITY) fields.get("priority", PRIORITY.Normal);
+    }
+
+    /**
+     * Writes the compact form
+     *
+     * @param out Output
+     * @throws IOException
+     */
+    @SuppressWarnings("unchecked")
+    private void writeCompact(ObjectOutput out) throws IOException {
+        PayloadCodec<Object> codec = (PayloadCodec<Object>) PayloadCodecs.getCodec(source, data, codecs);
+        if (codec == null && data != null) {
+            throw new NotSerializableException(data.getClass().getName());
+        }
+
+        out.writeByte(VERSION);
+        out.writeByte((trace != null) ? FLAG_TRACE : 0);
+        byte[] name = source.getBytes(StandardCharsets.UTF_8);
+        PayloadCodecs.writeVarLong(out, name.length);
+        out.write(name);
+        out.writeLong(time);
+        out.writeByte(priority.ordinal());
+        PayloadCodecs.writeVarLong(out, sequence);
+        if (trace != null) {
+            trace.write(out);
+        }
+
+        if (codec == null) {
+            out.writeByte(PayloadCodecs.NULL_ID);
+        } else {
+            out.writeByte(codec.getID());
+            codec.write(data, out);
+        }
+    }
+
+    /**
+     * Reads the compact form
+     *
+     * @param in Input
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    @SuppressWarnings("unchecked")
+    private void readCompact(ObjectInput in) throws IOException, ClassNotFoundException {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported notification version: " + version);
+        }
+        int flags = in.readUnsignedByte();
+        byte[] name = new byte[(int) PayloadCodecs.readVarLong(in)];
+        in.readFully(name);
+        String source = new String(name, StandardCharsets.UTF_8);
+        this.source = sourceNames.computeIfAbsent(source, k -> k);
+        this.time = in.readLong();
+        this.priority = PRIORITY.values()[in.readUnsignedByte()];
+        this.sequence = PayloadCodecs.readVarLong(in);
+        if ((flags & FLAG_TRACE) != 0) {
+            this.trace = Trace.read(in);
+        }
+
+        int codecID = in.readUnsignedByte();
+        if (codecID == PayloadCodecs.NULL_ID) {
+            this.data = null;
+            return;
+        }
+        PayloadCodec<?> codec = PayloadCodecs.get(codecID);
+        if (codec == null) {
+            throw new IOException("Unknown payload codec: " + codecID);
+        }
+        this.data = (T) codec.read(in);
+    }
+
+    /**
+     * Serialised stand-in for a notification written in the compact form
+     */
+    private static class Compact implements Externalizable {
+        private static final long serialVersionUID = 2016102004L;
+
+        private Notification<?> notification;
+
+        /**
+         * Creates an empty stand-in to be read in (for deserialisation only)
+         */
+        public Compact() {
+        }
+
+        Compact(Notification<?> notification) {
+            this.notification = notification;
+        }
+
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            notification.writeCompact(out);
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+            notification = new Notification<>();
+            notification.readCompact(in);
+            notification.compact = true;
+        }
+
+        /**
+         * Replaces the stand-in with the notification it was read into
+         *
+         * @return Notification
+         */
+        private Object readResolve() {
+            return notification;
+        }
+    }
+
     public enum PRIORITY {
         Lowest,
         Low,
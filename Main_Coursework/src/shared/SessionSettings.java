@@ -0,0 +1,148 @@
+package shared;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * How a source will deliver to a sink, negotiated from the sink's capabilities when it registers
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SessionSettings implements Serializable {
+    private static final long serialVersionUID = 2016102003L;
+
+    private final UUID sinkID;
+    private final int protocolVersion;
+    private final int[] codecs;
+    private final int frameRate;
+    private final boolean batching;
+    private final boolean lossless;
+
+    /**
+     * @param sinkID          ID the sink is registered under
+     * @param protocolVersion Protocol version both sides speak
+     * @param codecs          IDs of the payload codecs the source may use
+     * @param frameRate       Most notifications per second the source will send from a stream (0 for no limit)
+     * @param batching        Whether the source may send batches of notifications
+     * @param lossless        Whether the source sends every notification at full quality, without adapting
+     */
+    public SessionSettings(UUID sinkID, int protocolVersion, int[] codecs, int frameRate, boolean batching, boolean lossless) {
+        this.sinkID = sinkID;
+        this.protocolVersion = protocolVersion;
+        this.codecs = codecs.clone();
+        this.frameRate = frameRate;
+        this.batching = batching;
+        this.lossless = lossless;
+    }
+
+    /**
+     * Negotiates settings between a sink and a source
+     *
+     * @param sinkID       ID the sink is registered under
+     * @param capabilities Capabilities of the sink
+     * @param codecs       IDs of the payload codecs the source can write
+     * @param frameRate    Frame rate of the source's stream (0 if it doesn't stream)
+     * @param batching     Whether the source can send batches of notifications
+     * @return Settings
+     */
+    public static SessionSettings negotiate(UUID sinkID, SinkCapabilities capabilities, int[] codecs, int frameRate, boolean batching) {
+        int[] common = Arrays.stream(capabilities.getCodecs())
+                .filter(id -> Arrays.stream(codecs).anyMatch(c -> c == id))
+                .distinct()
+                .toArray();
+        int maxFrameRate = capabilities.getMaxFrameRate();
+        if (maxFrameRate != 0 && (frameRate == 0 || maxFrameRate < frameRate)) {
+            frameRate = maxFrameRate;
+        }
+        return new SessionSettings(
+                sinkID,
+                Math.min(capabilities.getProtocolVersion(), SinkCapabilities.PROTOCOL_VERSION),
+                common,
+                frameRate,
+                batching && capabilities.isBatching(),
+                capabilities.isLossless()
+        );
+    }
+
+    /**
+     * Gets the ID the sink is registered under
+     *
+     * @return Sink ID
+     */
+    public UUID getSinkID() {
+        return sinkID;
+    }
+
+    /**
+     * Gets the protocol version both sides speak
+     *
+     * @return Protocol version
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Gets whether notifications are sent in the compact form (see Notification), which sinks that registered
+     * without negotiating can't read
+     *
+     * @return True if notifications are sent in the compact form
+     */
+    public boolean isCompact() {
+        return protocolVersion >= 2;
+    }
+
+    /**
+     * Gets the IDs of the payload codecs the source may use
+     *
+     * @return Codec IDs
+     */
+    public int[] getCodecs() {
+        return codecs.clone();
+    }
+
+    /**
+     * Gets whether the source may use a payload codec
+     *
+     * @param codecID Codec ID (see PayloadCodecs)
+     * @return True if both sides support the codec
+     */
+    public boolean supports(int codecID) {
+        return Arrays.stream(codecs).anyMatch(id -> id == codecID);
+    }
+
+    /**
+     * Gets the most notifications per second the source will send from a stream
+     *
+     * @return Frame rate (0 for no limit)
+     */
+    public int getFrameRate() {
+        return frameRate;
+    }
+
+    /**
+     * Gets whether the source may send batches of notifications
+     *
+     * @return True if batching is enabled
+     */
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Gets whether the source sends every notification at full quality, without adapting to the sink's speed
+     *
+     * @return True if delivery is lossless
+     */
+    public boolean isLossless() {
+        return lossless;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("protocol: %d, codecs: %s, fps: %s, batching: %s, lossless: %s",
+                protocolVersion, Arrays.toString(codecs), (frameRate == 0) ? "unlimited" : frameRate, batching, lossless);
+    }
+}
@@ -0,0 +1,133 @@
+package shared;
+
+import shared.codec.PayloadCodecs;
+
+import java.awt.*;
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * What a sink supports, sent to a source when the sink registers so the source can pick the cheapest way to
+ * deliver to it (see SessionSettings for what the source picked)
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class SinkCapabilities implements Serializable {
+    private static final long serialVersionUID = 2016102002L;
+
+    /**
+     * Version of the sink/source protocol.
+     * 1: sinks that register without capabilities
+     * 2: capability negotiation, batched delivery, compact notifications
+     */
+    public static final int PROTOCOL_VERSION = 2;
+
+    private final int protocolVersion;
+    private final int[] codecs;
+    private final int maxFrameRate;
+    private final Dimension viewport;
+    private final boolean batching;
+    private final boolean lossless;
+
+    /**
+     * @param codecs       IDs of the payload codecs the sink can read (see PayloadCodecs)
+     * @param maxFrameRate Most notifications per second the sink wants from a stream (0 for no limit)
+     * @param viewport     Size of the area the sink displays notifications in (null if unknown)
+     * @param batching     Whether the sink accepts batches of notifications
+     */
+    public SinkCapabilities(int[] codecs, int maxFrameRate, Dimension viewport, boolean batching) {
+        this(codecs, maxFrameRate, viewport, batching, false);
+    }
+
+    /**
+     * @param codecs       IDs of the payload codecs the sink can read (see PayloadCodecs)
+     * @param maxFrameRate Most notifications per second the sink wants from a stream (0 for no limit)
+     * @param viewport     Size of the area the sink displays notifications in (null if unknown)
+     * @param batching     Whether the sink accepts batches of notifications
+     * @param lossless     Whether the sink needs every notification, at full quality (e.g. to record them)
+     */
+    public SinkCapabilities(int[] codecs, int maxFrameRate, Dimension viewport, boolean batching, boolean lossless) {
+        this(PROTOCOL_VERSION, codecs, maxFrameRate, viewport, batching, lossless);
+    }
+
+    private SinkCapabilities(int protocolVersion, int[] codecs, int maxFrameRate, Dimension viewport, boolean batching, boolean lossless) {
+        this.protocolVersion = protocolVersion;
+        this.codecs = codecs.clone();
+        this.maxFrameRate = Math.max(0, maxFrameRate);
+        this.viewport = viewport;
+        this.batching = batching;
+        this.lossless = lossless;
+    }
+
+    /**
+     * Gets the capabilities of a sink that registered without any: byte[] and serialised payloads, one at a time
+     *
+     * @param viewport Size of the area the sink displays notifications in (null if unknown)
+     * @return Capabilities
+     */
+    public static SinkCapabilities legacy(Dimension viewport) {
+        return new SinkCapabilities(1, new int[]{PayloadCodecs.BYTES_ID, PayloadCodecs.SERIALIZABLE_ID}, 0, viewport, false, false);
+    }
+
+    /**
+     * Gets the version of the protocol the sink speaks
+     *
+     * @return Protocol version
+     */
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Gets the IDs of the payload codecs the sink can read
+     *
+     * @return Codec IDs
+     */
+    public int[] getCodecs() {
+        return codecs.clone();
+    }
+
+    /**
+     * Gets the most notifications per second the sink wants from a stream
+     *
+     * @return Frame rate (0 for no limit)
+     */
+    public int getMaxFrameRate() {
+        return maxFrameRate;
+    }
+
+    /**
+     * Gets the size of the area the sink displays notifications in
+     *
+     * @return Viewport size (null if unknown)
+     */
+    public Dimension getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Gets whether the sink accepts batches of notifications
+     *
+     * @return True if the sink supports batching
+     */
+    public boolean isBatching() {
+        return batching;
+    }
+
+    /**
+     * Gets whether the sink needs every notification, so mustn't be stepped down or have frames skipped
+     *
+     * @return True if the sink is lossless
+     */
+    public boolean isLossless() {
+        return lossless;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("protocol: %d, codecs: %s, max fps: %d, viewport: %s, batching: %s, lossless: %s",
+                protocolVersion, Arrays.toString(codecs), maxFrameRate,
+                (viewport == null) ? "unknown" : viewport.width + "x" + viewport.height, batching, lossless);
+    }
+}
@@ -0,0 +1,159 @@
+package shared;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Trace of a notification's path from the source to the screen.
+ * <p>
+ * Timestamps are monotonic (System.nanoTime), so they only mean something on the host that took them:
+ * produced/dispatched are on the source's clock, received/painted on the sink's. The sink works out the offset
+ * between the clocks (see client.LatencyTracer), using the round trip time the source measured to the sink.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class Trace implements Serializable {
+    private static final long serialVersionUID = 2016102001L;
+
+    /**
+     * Trace IDs start at a random point, so IDs from different sources are unlikely to clash
+     */
+    private static final AtomicLong nextID = new AtomicLong(ThreadLocalRandom.current().nextLong() << 20);
+
+    private final long traceID;
+    private final long produced;
+    private final long dispatched;
+    private final long roundTrip;
+
+    private transient long received;
+    private transient long painted;
+
+    private Trace(long traceID, long produced, long dispatched, long roundTrip) {
+        this.traceID = traceID;
+        this.produced = produced;
+        this.dispatched = dispatched;
+        this.roundTrip = roundTrip;
+    }
+
+    /**
+     * Starts a trace for a notification that has just been produced
+     *
+     * @return Trace
+     */
+    public static Trace produce() {
+        return new Trace(nextID.getAndIncrement(), System.nanoTime(), 0, 0);
+    }
+
+    /**
+     * Creates a copy of the trace stamped with the time it was dispatched to a sink.
+     * A copy is made as the same notification is dispatched to many sinks.
+     *
+     * @param roundTrip Recent round trip time to the sink (in nanoseconds, 0 if unknown)
+     * @return Dispatched trace
+     */
+    public Trace dispatch(long roundTrip) {
+        return new Trace(traceID, produced, System.nanoTime(), roundTrip);
+    }
+
+    /**
+     * Stamps the time the notification was received by the sink
+     */
+    public void receive() {
+        received = System.nanoTime();
+    }
+
+    /**
+     * Stamps the time the notification was painted by the sink
+     */
+    public void paint() {
+        painted = System.nanoTime();
+    }
+
+    /**
+     * Gets the ID of the trace; the same for every sink the notification was sent to
+     *
+     * @return Trace ID
+     */
+    public long getTraceID() {
+        return traceID;
+    }
+
+    /**
+     * Gets the time the notification was produced
+     *
+     * @return Time (source nanoTime)
+     */
+    public long getProduced() {
+        return produced;
+    }
+
+    /**
+     * Gets the time the notification was dispatched to the sink
+     *
+     * @return Time (source nanoTime), 0 if not dispatched
+     */
+    public long getDispatched() {
+        return dispatched;
+    }
+
+    /**
+     * Gets the round trip time to the sink, measured by the source when it dispatched the notification
+     *
+     * @return Round trip time (in nanoseconds), 0 if unknown
+     */
+    public long getRoundTrip() {
+        return roundTrip;
+    }
+
+    /**
+     * Gets the time the notification was received
+     *
+     * @return Time (sink nanoTime), 0 if not received
+     */
+    public long getReceived() {
+        return received;
+    }
+
+    /**
+     * Gets the time the notification was painted
+     *
+     * @return Time (sink nanoTime), 0 if not painted
+     */
+    public long getPainted() {
+        return painted;
+    }
+
+    /**
+     * Writes the fields sent to the sink, as part of a notification's encoding
+     *
+     * @param out Output
+     * @throws IOException
+     */
+    void write(ObjectOutput out) throws IOException {
+        out.writeLong(traceID);
+        out.writeLong(produced);
+        out.writeLong(dispatched);
+        out.writeLong(roundTrip);
+    }
+
+    /**
+     * Reads a trace written by write
+     *
+     * @param in Input
+     * @return Trace
+     * @throws IOException
+     */
+    static Trace read(ObjectInput in) throws IOException {
+        return new Trace(in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("trace: %016x", traceID);
+    }
+}
@@ -0,0 +1,71 @@
+package shared.codec;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+
+/**
+ * Codec for ByteBuffer payloads: a length then the remaining bytes of the buffer.
+ * <p>
+ * Heap buffers (and slices of them) are written straight from their backing array. Direct buffers are written
+ * through a small per-thread chunk, so even large off-heap frames are never copied whole onto the heap.
+ * The buffer's position is left unchanged, so the same buffer can be sent to many sinks at once.
+ * Payloads are read into heap buffers.
+ * <p>
+ * The encoding is the same as BytesCodec's, so buffers can be sent to sinks that only read byte[] payloads by
+ * writing them under the byte[] codec's ID.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+class ByteBufferCodec implements PayloadCodec<ByteBuffer> {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private static final ThreadLocal<byte[]> chunks = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    private final int id;
+
+    /**
+     * @param id ID to write payloads under (BUFFER_ID, or BYTES_ID for sinks that only read byte[] payloads)
+     */
+    ByteBufferCodec(int id) {
+        this.id = id;
+    }
+
+    @Override
+    public int getID() {
+        return id;
+    }
+
+    @Override
+    public Class<ByteBuffer> getType() {
+        return ByteBuffer.class;
+    }
+
+    @Override
+    public void write(ByteBuffer payload, ObjectOutput out) throws IOException {
+        ByteBuffer buffer = payload.duplicate();
+        PayloadCodecs.writeVarLong(out, buffer.remaining());
+
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            return;
+        }
+
+        byte[] chunk = chunks.get();
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+    }
+
+    @Override
+    public ByteBuffer read(ObjectInput in) throws IOException {
+        byte[] payload = new byte[PayloadCodecs.readLength(in)];
+        in.readFully(payload);
+        return ByteBuffer.wrap(payload);
+    }
+}
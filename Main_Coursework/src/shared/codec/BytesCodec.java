@@ -0,0 +1,38 @@
+package shared.codec;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Codec for byte[] payloads: a length then the raw bytes.
+ * The array is handed straight to the stream, so unlike writeObject it isn't copied into the stream's block buffer.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+class BytesCodec implements PayloadCodec<byte[]> {
+
+    @Override
+    public int getID() {
+        return PayloadCodecs.BYTES_ID;
+    }
+
+    @Override
+    public Class<byte[]> getType() {
+        return byte[].class;
+    }
+
+    @Override
+    public void write(byte[] payload, ObjectOutput out) throws IOException {
+        PayloadCodecs.writeVarLong(out, payload.length);
+        out.write(payload);
+    }
+
+    @Override
+    public byte[] read(ObjectInput in) throws IOException {
+        byte[] payload = new byte[PayloadCodecs.readLength(in)];
+        in.readFully(payload);
+        return payload;
+    }
+}
@@ -0,0 +1,48 @@
+package shared.codec;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Encodes a type of notification payload.
+ * Codecs are identified on the wire by a single byte, so the sink must have registered a codec with the same ID.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public interface PayloadCodec<T> {
+
+    /**
+     * Gets the ID of the codec, written ahead of each payload it encodes
+     *
+     * @return ID (1-255; IDs below PayloadCodecs.FIRST_CUSTOM_ID are reserved)
+     */
+    int getID();
+
+    /**
+     * Gets the type of payload the codec encodes
+     *
+     * @return Payload type
+     */
+    Class<T> getType();
+
+    /**
+     * Writes a payload
+     *
+     * @param payload Payload
+     * @param out     Output
+     * @throws IOException
+     */
+    void write(T payload, ObjectOutput out) throws IOException;
+
+    /**
+     * Reads a payload written by write
+     *
+     * @param in Input
+     * @return Payload
+     * @throws IOException
+     * @throws ClassNotFoundException
+     */
+    T read(ObjectInput in) throws IOException, ClassNotFoundException;
+}
@@ -0,0 +1,259 @@
+package shared.codec;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Registry of payload codecs.
+ * <p>
+ * Codecs are looked up by ID when a notification is read. When one is written, the codecs registered for its source
+ * are tried first (in the order they were registered), then the built in codecs: byte[], ByteBuffer, and Java
+ * serialisation as a fallback for any other Serializable payload.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public final class PayloadCodecs {
+
+    /**
+     * ID written for a null payload
+     */
+    public static final int NULL_ID = 0;
+    public static final int BYTES_ID = 1;
+    public static final int BUFFER_ID = 2;
+    public static final int SERIALIZABLE_ID = 3;
+
+    /**
+     * Not a codec: advertised by sinks that can decode tiled frames (see ImageUtils.imageToTiledBytes), so sources
+     * only send them tiled frames. The frames themselves are written as byte[]/ByteBuffer payloads.
+     */
+    public static final int TILED_IMAGE_ID = 4;
+
+    /**
+     * Lowest ID available to codecs registered by sources
+     */
+    public static final int FIRST_CUSTOM_ID = 16;
+
+    public static final PayloadCodec<byte[]> BYTES = new BytesCodec();
+    public static final PayloadCodec<ByteBuffer> BUFFER = new ByteBufferCodec(BUFFER_ID);
+    public static final PayloadCodec<Serializable> SERIALIZABLE = new SerializableCodec();
+
+    /**
+     * Writes ByteBuffers as byte[] payloads, for sinks that can't read ByteBuffers
+     */
+    private static final PayloadCodec<ByteBuffer> BUFFER_AS_BYTES = new ByteBufferCodec(BYTES_ID);
+
+    private static final AtomicReferenceArray<PayloadCodec<?>> codecs = new AtomicReferenceArray<>(256);
+    private static final ConcurrentHashMap<String, List<PayloadCodec<?>>> sourceCodecs = new ConcurrentHashMap<>();
+
+    static {
+        codecs.set(BYTES_ID, BYTES);
+        codecs.set(BUFFER_ID, BUFFER);
+        codecs.set(SERIALIZABLE_ID, SERIALIZABLE);
+    }
+
+    private PayloadCodecs() {
+    }
+
+    /**
+     * Registers a codec so payloads it wrote can be read
+     *
+     * @param codec Codec
+     * @throws IllegalArgumentException Thrown if the ID is reserved, or taken by a different codec
+     */
+    public static void register(PayloadCodec<?> codec) {
+        int id = codec.getID();
+        if (id < FIRST_CUSTOM_ID || id > 255) {
+            throw new IllegalArgumentException("Payload codec ID must be between " + FIRST_CUSTOM_ID + " and 255, got " + id);
+        }
+        PayloadCodec<?> existing = codecs.get(id);
+        if (existing == null && codecs.compareAndSet(id, null, codec)) return;
+        existing = codecs.get(id);
+        if (existing.getClass() != codec.getClass()) {
+            throw new IllegalArgumentException("Payload codec ID " + id + " is already taken by " + existing.getClass().getName());
+        }
+    }
+
+    /**
+     * Registers a codec for the payloads of a source
+     *
+     * @param sourceID Source
+     * @param codec    Codec
+     * @throws IllegalArgumentException Thrown if the ID is reserved, or taken by a different codec
+     */
+    public static void register(String sourceID, PayloadCodec<?> codec) {
+        register(codec);
+        sourceCodecs.computeIfAbsent(sourceID, k -> new CopyOnWriteArrayList<>()).add(codec);
+    }
+
+    /**
+     * Removes the codecs registered for a source (they can still be used to read payloads)
+     *
+     * @param sourceID Source
+     */
+    public static void unregister(String sourceID) {
+        sourceCodecs.remove(sourceID);
+    }
+
+    /**
+     * Gets a codec by ID
+     *
+     * @param id Codec ID
+     * @return Codec, null if no codec has the ID
+     */
+    public static PayloadCodec<?> get(int id) {
+        return (id < 0 || id > 255) ? null : codecs.get(id);
+    }
+
+    /**
+     * Gets the codec to write a payload with
+     *
+     * @param sourceID Source of the payload
+     * @param payload  Payload
+     * @return Codec, null if the payload is null or can't be encoded
+     */
+    public static PayloadCodec<?> getCodec(String sourceID, Object payload) {
+        return getCodec(sourceID, payload, null);
+    }
+
+    /**
+     * Gets the codec to write a payload with, using only codecs a sink supports
+     *
+     * @param sourceID  Source of the payload
+     * @param payload   Payload
+     * @param supported IDs of the codecs the sink supports (null if it supports them all)
+     * @return Codec, null if the payload is null or can't be encoded for the sink
+     */
+    public static PayloadCodec<?> getCodec(String sourceID, Object payload, int[] supported) {
+        if (payload == null) return null;
+
+        List<PayloadCodec<?>> registered = (sourceID == null) ? null : sourceCodecs.get(sourceID);
+        if (registered != null) {
+            for (PayloadCodec<?> codec : registered) {
+                if (codec.getType().isInstance(payload) && contains(supported, codec.getID())) return codec;
+            }
+        }
+        if (payload instanceof byte[] && contains(supported, BYTES_ID)) return BYTES;
+        if (payload instanceof ByteBuffer) {
+            if (contains(supported, BUFFER_ID)) return BUFFER;
+            if (contains(supported, BYTES_ID)) return BUFFER_AS_BYTES;
+        }
+        if (payload instanceof Serializable && contains(supported, SERIALIZABLE_ID)) return SERIALIZABLE;
+        return null;
+    }
+
+    /**
+     * Gets the IDs of every registered codec, and TILED_IMAGE_ID, for a sink to advertise what it can read
+     *
+     * @return Codec IDs
+     */
+    public static int[] getIDs() {
+        int[] ids = new int[codecs.length()];
+        int count = 0;
+        for (int id = 0; id < codecs.length(); id++) {
+            if (codecs.get(id) != null || id == TILED_IMAGE_ID) ids[count++] = id;
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    /**
+     * Returns whether a list of codec IDs contains an ID
+     *
+     * @param ids IDs (null for every ID)
+     * @param id  ID to find
+     * @return True if the ID is in the list
+     */
+    private static boolean contains(int[] ids, int id) {
+        if (ids == null) return true;
+        for (int i : ids) {
+            if (i == id) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the bytes of a binary payload, without copying where possible
+     *
+     * @param payload Payload (byte[] or ByteBuffer)
+     * @return Bytes, null if the payload isn't binary
+     */
+    public static byte[] getBytes(Object payload) {
+        if (payload instanceof byte[]) return (byte[]) payload;
+        if (!(payload instanceof ByteBuffer)) return null;
+
+        ByteBuffer buffer = (ByteBuffer) payload;
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.position() == 0 && buffer.remaining() == buffer.array().length) {
+            return buffer.array();
+        }
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Gets the length of a binary payload
+     *
+     * @param payload Payload (byte[] or ByteBuffer)
+     * @return Length (in bytes), 0 if the payload isn't binary
+     */
+    public static int getLength(Object payload) {
+        if (payload instanceof byte[]) return ((byte[]) payload).length;
+        if (payload instanceof ByteBuffer) return ((ByteBuffer) payload).remaining();
+        return 0;
+    }
+
+    /**
+     * Writes a non-negative long in 7 bit groups, so small values take a single byte
+     *
+     * @param out   Output
+     * @param value Value
+     * @throws IOException
+     */
+    public static void writeVarLong(ObjectOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /**
+     * Reads a long written by writeVarLong
+     *
+     * @param in Input
+     * @return Value
+     * @throws IOException
+     */
+    public static long readVarLong(ObjectInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a length written by writeVarLong, checking it fits in an array
+     *
+     * @param in Input
+     * @return Length
+     * @throws IOException
+     */
+    static int readLength(ObjectInput in) throws IOException {
+        long length = readVarLong(in);
+        if (length > Integer.MAX_VALUE - 8) {
+            throw new IOException("Payload too large: " + length + " bytes");
+        }
+        return (int) length;
+    }
+}
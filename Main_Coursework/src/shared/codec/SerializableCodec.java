@@ -0,0 +1,37 @@
+package shared.codec;
+
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.Serializable;
+
+/**
+ * Fallback codec for payloads with no other codec, using Java serialisation.
+ * This also carries remote objects (e.g. the source stubs sent by the SourceProxy), which RMI replaces as they are
+ * written.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+class SerializableCodec implements PayloadCodec<Serializable> {
+
+    @Override
+    public int getID() {
+        return PayloadCodecs.SERIALIZABLE_ID;
+    }
+
+    @Override
+    public Class<Serializable> getType() {
+        return Serializable.class;
+    }
+
+    @Override
+    public void write(Serializable payload, ObjectOutput out) throws IOException {
+        out.writeObject(payload);
+    }
+
+    @Override
+    public Serializable read(ObjectInput in) throws IOException, ClassNotFoundException {
+        return (Serializable) in.readObject();
+    }
+}
@@ -4,6 +4,7 @@ import shared.Notification;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
 
 /**
  * Notification Sink Interface
@@ -19,5 +20,18 @@ public interface INotificationSink extends Remote {
      * @param notification Notification
      * @throws RemoteException
      */
-    void notify(Notification notification) throws RemoteException;
+    void notify(Notification<?> notification) throws RemoteException;
+
+    /**
+     * Notifies a Sink of several notifications in one call, in order.
+     * Sources only send batches to sinks that said they support batching when they registered.
+     *
+     * @param notifications Notifications (in sequence order)
+     * @throws RemoteException
+     */
+    default void notifyBatch(List<Notification<?>> notifications) throws RemoteException {
+        for (Notification<?> notification : notifications) {
+            notify(notification);
+        }
+    }
 }
@@ -1,7 +1,10 @@
 package shared.interfaces;
 
+import shared.SessionSettings;
+import shared.SinkCapabilities;
 import shared.exceptions.RegisterFailException;
 
+import java.awt.*;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.UUID;
@@ -33,6 +36,72 @@ public interface INotificationSource extends Remote {
      */
     boolean register(UUID sinkID, INotificationSink sink) throws RemoteException, RegisterFailException;
 
+    /**
+     * Registers a sink to receive shared.util.notifications
+     *
+     * @param sinkID   ID of sink
+     * @param sink     Sink to register
+     * @param viewport Size of the area the sink displays notifications in (null if unknown)
+     * @return True if Sink was successfully registered
+     * @throws RemoteException
+     */
+    boolean register(UUID sinkID, INotificationSink sink, Dimension viewport) throws RemoteException, RegisterFailException;
+
+    /**
+     * Registers a sink to receive shared.util.notifications, negotiating how they are delivered from what the sink
+     * supports. Sinks that register any other way are treated as supporting SinkCapabilities.legacy.
+     *
+     * @param sinkID       ID of sink (null to have one assigned)
+     * @param sink         Sink to register
+     * @param capabilities What the sink supports
+     * @return Negotiated settings (including the ID the sink is registered under)
+     * @throws RemoteException
+     */
+    SessionSettings register(UUID sinkID, INotificationSink sink, SinkCapabilities capabilities) throws RemoteException, RegisterFailException;
+
+    /**
+     * Re-registers a sink after it lost its connection, resuming delivery after the last notification it received.
+     * If the source no longer has the notifications it missed, the sink is sent the current state instead.
+     * If the source doesn't know the sink (e.g. the source restarted), a new session is started as with
+     * register(sinkID, sink), and the sink should forget the sequence numbers it has received.
+     *
+     * @param sinkID       ID of sink
+     * @param sink         Sink to register
+     * @param lastSequence Sequence number of the last notification the sink received from this source
+     * @return Sequence number delivery continues after: lastSequence if the session was resumed, 0 if a new session
+     * was started
+     * @throws RemoteException
+     */
+    long resume(UUID sinkID, INotificationSink sink, long lastSequence) throws RemoteException, RegisterFailException;
+
+    /**
+     * Updates the size of the area a sink displays notifications in
+     *
+     * @param sinkID   ID of sink
+     * @param viewport Size of the area the sink displays notifications in (null if unknown)
+     * @throws RemoteException
+     */
+    void setViewport(UUID sinkID, Dimension viewport) throws RemoteException;
+
+    /**
+     * Subscribes a sink to a named variant of the source's notifications
+     *
+     * @param sinkID  ID of sink
+     * @param variant Name of variant (null for the default)
+     * @throws RemoteException
+     */
+    void setVariant(UUID sinkID, String variant) throws RemoteException;
+
+    /**
+     * Pauses/resumes delivery to a sink (e.g. when the sink's display is hidden).
+     * Sources may stop sending droppable notifications to a paused sink.
+     *
+     * @param sinkID ID of sink
+     * @param paused True to pause delivery, false to resume it
+     * @throws RemoteException
+     */
+    void setPaused(UUID sinkID, boolean paused) throws RemoteException;
+
     /**
      * Returns whether a sink is registered or not
      *
@@ -14,5 +14,17 @@ public interface ISinkCallbackHandler {
      * Sink Notification callback method
      * @param notification Notification received
      */
-    void notify(Notification notification);
+    void notify(Notification<?> notification);
+
+    /**
+     * Whether the handler needs every notification (e.g. to record them).
+     * Lossless handlers are called straight away on the thread that received the notification rather than through
+     * a mailbox that drops the oldest when full, so they must queue anything slow themselves. Sources are also asked
+     * not to step them down a rendition or skip frames.
+     *
+     * @return True if no notifications may be dropped
+     */
+    default boolean isLossless() {
+        return false;
+    }
 }
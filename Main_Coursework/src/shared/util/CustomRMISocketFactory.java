@@ -1,18 +1,81 @@
 package shared.util;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.SocketException;
 import java.rmi.server.RMISocketFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 /**
- * {DESCRIPTION}
+ * Socket factory for RMI connections.
+ * <p>
+ * Sockets are created with the configured TCP_NODELAY and buffer sizes, and can compress their traffic.
+ * Compression is negotiated per connection: a factory with compression enabled opens each connection with a short
+ * header, which a matching factory answers with its own. Traffic in both directions is then compressed if both
+ * factories have compression enabled. Each side compresses at its own level.
+ * Endpoints that reject the header (e.g. a plain rmiregistry, which closes the connection) are reconnected to without
+ * it and remembered, so compression never breaks a connection to a peer that doesn't support it. Other failures
+ * (e.g. a slow peer timing out) fail the connection as normal, so a busy peer isn't downgraded for good.
  *
  * @author Huw Jones
  * @since 14/12/2016
  */
 public class CustomRMISocketFactory extends RMISocketFactory {
+
+    /**
+     * Header that opens a negotiated connection ("RMIZ")
+     */
+    private static final int MAGIC = 0x524d495a;
+    private static final int VERSION = 1;
+
+    private static final int CONNECT_TIMEOUT = 250;
+    private static final int HANDSHAKE_TIMEOUT = 1000;
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Endpoints (host:port) that didn't negotiate, so are connected to without the header
+     */
+    private static final Set<String> plainEndpoints = ConcurrentHashMap.newKeySet();
+
+    private final boolean tcpNoDelay;
+    private final int sendBufferSize;
+    private final int receiveBufferSize;
+    private final int compressionLevel;
+
+    /**
+     * Creates a factory with TCP_NODELAY on, the system's buffer sizes, and no compression
+     */
+    public CustomRMISocketFactory() {
+        this(true, 0, 0, 0);
+    }
+
+    /**
+     * @param tcpNoDelay        True to disable Nagle's algorithm (send small messages straight away)
+     * @param sendBufferSize    Socket send buffer size in bytes (0 for the system default)
+     * @param receiveBufferSize Socket receive buffer size in bytes (0 for the system default)
+     * @param compressionLevel  Deflate level to compress traffic with, 1 (fastest) to 9 (smallest); 0 for none
+     */
+    public CustomRMISocketFactory(boolean tcpNoDelay, int sendBufferSize, int receiveBufferSize, int compressionLevel) {
+        this.tcpNoDelay = tcpNoDelay;
+        this.sendBufferSize = Math.max(0, sendBufferSize);
+        this.receiveBufferSize = Math.max(0, receiveBufferSize);
+        this.compressionLevel = Math.max(0, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
+    }
+
     /**
      * Creates a client socket connected to the specified host and port.
      *
@@ -24,11 +87,24 @@ public class CustomRMISocketFactory extends RMISocketFactory {
      */
     @Override
     public Socket createSocket(String host, int port) throws IOException {
-        Socket socket = new Socket();
-        //socket.setSoTimeout( 1500 );
-        socket.setSoLinger( false, 0 );
-        socket.connect( new InetSocketAddress( host, port ), 250 );
-        return socket;
+        String endpoint = host + ":" + port;
+        TunedSocket socket = connect(host, port);
+        if (compressionLevel == 0 || plainEndpoints.contains(endpoint)) {
+            return socket;
+        }
+
+        try {
+            socket.negotiate();
+            return socket;
+        } catch (NotNegotiatedException e) {
+            Log.Debug(String.format("%s didn't negotiate compression (%s), connecting without it", endpoint, e.getMessage()));
+            plainEndpoints.add(endpoint);
+            socket.close();
+            return connect(host, port);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
     }
 
     /**
@@ -43,6 +119,212 @@ public class CustomRMISocketFactory extends RMISocketFactory {
      */
     @Override
     public ServerSocket createServerSocket(int port) throws IOException {
-        return new ServerSocket( port );
+        ServerSocket serverSocket = new TunedServerSocket();
+        // The receive buffer must be set before binding, so large windows can be negotiated
+        if (receiveBufferSize > 0) serverSocket.setReceiveBufferSize(receiveBufferSize);
+        serverSocket.bind(new InetSocketAddress(port));
+        return serverSocket;
+    }
+
+    /**
+     * Creates a socket connected to a host
+     *
+     * @param host Host
+     * @param port Port
+     * @return Connected socket
+     * @throws IOException
+     */
+    private TunedSocket connect(String host, int port) throws IOException {
+        TunedSocket socket = new TunedSocket(false);
+        socket.setSoLinger(false, 0);
+        configure(socket);
+        socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+        return socket;
+    }
+
+    /**
+     * Applies the configured options to a socket
+     *
+     * @param socket Socket
+     * @throws SocketException
+     */
+    private void configure(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(tcpNoDelay);
+        if (sendBufferSize > 0) socket.setSendBufferSize(sendBufferSize);
+        if (receiveBufferSize > 0) socket.setReceiveBufferSize(receiveBufferSize);
+    }
+
+    /**
+     * Server socket that accepts TunedSockets
+     */
+    private class TunedServerSocket extends ServerSocket {
+
+        TunedServerSocket() throws IOException {
+            super();
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            TunedSocket socket = new TunedSocket(true);
+            implAccept(socket);
+            configure(socket);
+            return socket;
+        }
+    }
+
+    /**
+     * Socket that keeps the configured TCP_NODELAY, and compresses its streams if negotiated
+     */
+    private class TunedSocket extends Socket {
+
+        /**
+         * Whether the socket was accepted (so waits for the connecting side to negotiate)
+         */
+        private final boolean accepted;
+        private boolean negotiated = false;
+        private InputStream in;
+        private OutputStream out;
+
+        TunedSocket(boolean accepted) {
+            this.accepted = accepted;
+        }
+
+        @Override
+        public void setTcpNoDelay(boolean on) throws SocketException {
+            // RMI turns Nagle's algorithm off on every socket it uses, so keep to the configured setting
+            super.setTcpNoDelay(tcpNoDelay);
+        }
+
+        /**
+         * Negotiates compression with the accepting side
+         *
+         * @throws NotNegotiatedException Thrown if the accepting side closed the connection or answered with something
+         *                                else (i.e. isn't a matching factory)
+         * @throws IOException             Thrown if the connection failed (e.g. the answer timed out)
+         */
+        void negotiate() throws IOException {
+            InputStream rawIn = super.getInputStream();
+            OutputStream rawOut = super.getOutputStream();
+
+            DataOutputStream header = new DataOutputStream(rawOut);
+            header.writeInt(MAGIC);
+            header.writeByte(VERSION);
+            header.writeByte(compressionLevel);
+            header.flush();
+
+            int timeout = getSoTimeout();
+            setSoTimeout(HANDSHAKE_TIMEOUT);
+            DataInputStream reply = new DataInputStream(rawIn);
+            int level;
+            try {
+                if (reply.readInt() != MAGIC) {
+                    throw new NotNegotiatedException("unexpected reply");
+                }
+                reply.readUnsignedByte();
+                level = reply.readUnsignedByte();
+            } catch (EOFException e) {
+                throw new NotNegotiatedException("connection closed");
+            }
+            setSoTimeout(timeout);
+
+            wrap(rawIn, rawOut, level > 0);
+        }
+
+        /**
+         * Answers the connecting side's negotiation, if it sent a header
+         *
+         * @throws IOException
+         */
+        private synchronized void answer() throws IOException {
+            if (negotiated) return;
+            negotiated = true;
+
+            PushbackInputStream rawIn = new PushbackInputStream(super.getInputStream(), 4);
+            OutputStream rawOut = super.getOutputStream();
+
+            byte[] magic = new byte[4];
+            int read = 0;
+            while (read < magic.length) {
+                int count = rawIn.read(magic, read, magic.length - read);
+                if (count < 0) break;
+                read += count;
+            }
+            if (read < magic.length || ((magic[0] & 0xFF) << 24 | (magic[1] & 0xFF) << 16 | (magic[2] & 0xFF) << 8 | (magic[3] & 0xFF)) != MAGIC) {
+                // Not negotiating, so hand the bytes on to RMI
+                rawIn.unread(magic, 0, read);
+                this.in = rawIn;
+                this.out = rawOut;
+                return;
+            }
+
+            DataInputStream header = new DataInputStream(rawIn);
+            header.readUnsignedByte();
+            int level = header.readUnsignedByte();
+
+            DataOutputStream reply = new DataOutputStream(rawOut);
+            reply.writeInt(MAGIC);
+            reply.writeByte(VERSION);
+            reply.writeByte(compressionLevel);
+            reply.flush();
+
+            wrap(rawIn, rawOut, level > 0 && compressionLevel > 0);
+        }
+
+        /**
+         * Sets the streams of the socket
+         *
+         * @param rawIn    Socket input
+         * @param rawOut   Socket output
+         * @param compress True to compress both directions
+         */
+        private void wrap(InputStream rawIn, OutputStream rawOut, boolean compress) {
+            if (compress) {
+                this.in = new InflatingInputStream(rawIn);
+                // Buffered, so each flush goes out in as few packets as possible
+                this.out = new DeflaterOutputStream(new BufferedOutputStream(rawOut, BUFFER_SIZE), new Deflater(compressionLevel), BUFFER_SIZE, true);
+            } else {
+                this.in = rawIn;
+                this.out = rawOut;
+            }
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (accepted) answer();
+            return (in != null) ? in : super.getInputStream();
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if (accepted) answer();
+            return (out != null) ? out : super.getOutputStream();
+        }
+    }
+
+    /**
+     * Thrown when the accepting side of a connection rejects the negotiation header
+     */
+    private static class NotNegotiatedException extends IOException {
+        NotNegotiatedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Inflates a compressed stream.
+     * RMI buffers its input, and keeps reading while the stream says more is available. InflaterInputStream always
+     * says more is available until the stream ends, which would block waiting for the next message, so this
+     * doesn't.
+     */
+    private static class InflatingInputStream extends InflaterInputStream {
+
+        InflatingInputStream(InputStream in) {
+            super(in, new Inflater(), BUFFER_SIZE);
+        }
+
+        @Override
+        public int available() throws IOException {
+            return 0;
+        }
     }
 }
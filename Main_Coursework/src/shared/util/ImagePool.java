@@ -0,0 +1,99 @@
+package shared.util;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of TYPE_INT_ARGB images of one size, so frames can be decoded into recycled images rather than
+ * allocating a new image for every frame.
+ * If a different size is requested (e.g. the source switched rendition), the free images are discarded.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class ImagePool {
+
+    private final int capacity;
+    private final ArrayDeque<BufferedImage> free;
+
+    private int width = -1;
+    private int height = -1;
+
+    private final AtomicLong allocated = new AtomicLong(0);
+    private final AtomicLong reused = new AtomicLong(0);
+
+    /**
+     * Creates an image pool
+     *
+     * @param capacity Maximum number of free images to keep
+     */
+    public ImagePool(int capacity) {
+        this.capacity = capacity;
+        this.free = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Gets an image from the pool, or creates one if there are none free.
+     * The contents of a recycled image are undefined.
+     *
+     * @param width  Image width
+     * @param height Image height
+     * @return TYPE_INT_ARGB image
+     */
+    public synchronized BufferedImage acquire(int width, int height) {
+        if (width != this.width || height != this.height) {
+            free.clear();
+            this.width = width;
+            this.height = height;
+        }
+
+        BufferedImage image = free.poll();
+        if (image != null) {
+            reused.incrementAndGet();
+            return image;
+        }
+        allocated.incrementAndGet();
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    /**
+     * Returns an image to the pool once it is no longer in use.
+     * Images that can't be reused (wrong size/type) or that don't fit in the pool are left for the GC.
+     *
+     * @param image Image to return
+     */
+    public synchronized void release(BufferedImage image) {
+        if (image == null
+                || image.getType() != BufferedImage.TYPE_INT_ARGB
+                || image.getWidth() != width || image.getHeight() != height
+                || free.size() >= capacity
+                || free.contains(image)) {
+            return;
+        }
+        free.add(image);
+    }
+
+    /**
+     * Gets the number of images the pool has created
+     *
+     * @return Number of images
+     */
+    public long getAllocated() {
+        return allocated.get();
+    }
+
+    /**
+     * Gets the number of times an image was recycled
+     *
+     * @return Number of times
+     */
+    public long getReused() {
+        return reused.get();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("size: %dx%d, free: %d/%d, allocated: %d, reused: %d", width, height, free.size(), capacity, getAllocated(), getReused());
+    }
+}
@@ -1,11 +1,17 @@
 package shared.util;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
+import java.awt.image.IndexColorModel;
+import java.io.*;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
 /**
  * Image Utils
@@ -15,29 +21,162 @@ import java.io.IOException;
  */
 public class ImageUtils {
 
+    /**
+     * Header of a tiled frame (PNG files start with 0x89 'P', so the two can't be confused)
+     */
+    private static final byte[] TILE_MAGIC = {'T', 'I', 'L', 'E'};
+
+    /**
+     * Images with at least this many pixels are split into strips that are compressed in parallel
+     */
+    private static final int TILE_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Minimum height of a strip
+     */
+    private static final int MIN_STRIP_HEIGHT = 64;
+
+    /**
+     * PNG reader for each thread, so readers aren't created for every frame
+     */
+    private static final ThreadLocal<ImageReader> PNG_READER = ThreadLocal.withInitial(() -> ImageIO.getImageReadersByFormatName("png").next());
+
+    /**
+     * Scaled images with at least this many pixels are drawn as strips in parallel
+     */
+    private static final int PARALLEL_SCALE_THRESHOLD = 512 * 512;
+
     /**
      * Gets scaled version of a buffered image
      * @param image Image to scale
      * @param width Max width
      * @param height Max height
-     * @return
+     * @return Image of size width x height, with the scaled image centred in it
      */
     public static BufferedImage getScaledImage(BufferedImage image, int width, int height) {
         double scale = Math.min((double) width / image.getWidth(), (double) height / image.getHeight());
-        Double newWidth = scale * image.getWidth();
-        Double newHeight = scale * image.getHeight();
-        Double xPos = ((double) width - newWidth) / 2d;
-        Double yPos = ((double) height - newHeight) / 2d;
+        int newWidth = Math.max(1, (int) (scale * image.getWidth()));
+        int newHeight = Math.max(1, (int) (scale * image.getHeight()));
 
-        Image tmp = image.getScaledInstance(newWidth.intValue(), newHeight.intValue(), Image.SCALE_SMOOTH);
         BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2d = scaledImage.createGraphics();
-        g2d.drawImage(tmp, xPos.intValue(), yPos.intValue(), null);
+        g2d.drawImage(scaleImage(image, newWidth, newHeight), (width - newWidth) / 2, (height - newHeight) / 2, null);
         g2d.dispose();
 
         return scaledImage;
     }
 
+    /**
+     * Scales an image to an exact size.
+     * Reductions of more than half are done by halving the image with bilinear filtering until it is within 2x
+     * of the target size (so every source pixel contributes), then a final bicubic step.
+     * Smaller reductions are a single bicubic step, and enlargements a single bilinear step.
+     *
+     * @param image  Image to scale
+     * @param width  Width
+     * @param height Height
+     * @return Scaled image
+     */
+    public static BufferedImage scaleImage(BufferedImage image, int width, int height) {
+        if (image.getWidth() == width && image.getHeight() == height) {
+            return image;
+        }
+
+        BufferedImage current = halve(image, width, height);
+        if (current.getWidth() == width && current.getHeight() == height) {
+            return current;
+        }
+        return drawScaled(current, new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB), getInterpolation(current, width, height));
+    }
+
+    /**
+     * Scales an image into an existing image of the size to scale to, in the same steps as scaleImage.
+     * Lets callers that scale every frame (e.g. to the size of a panel) keep one destination image, such as a
+     * compatible image that can be drawn to the screen quickly.
+     *
+     * @param image       Image to scale
+     * @param destination Image to draw the scaled image into (its contents are replaced)
+     * @return Destination
+     */
+    public static BufferedImage scaleImage(BufferedImage image, BufferedImage destination) {
+        int width = destination.getWidth();
+        int height = destination.getHeight();
+        BufferedImage current = halve(image, width, height);
+        return drawScaled(current, destination, (current.getWidth() == width && current.getHeight() == height)
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : getInterpolation(current, width, height));
+    }
+
+    /**
+     * Halves an image with bilinear filtering until it is within 2x of a size
+     *
+     * @param image  Image to halve
+     * @param width  Width
+     * @param height Height
+     * @return Halved image (the image itself if it's already within 2x)
+     */
+    private static BufferedImage halve(BufferedImage image, int width, int height) {
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width || current.getHeight() / 2 >= height) {
+            int halfWidth = Math.max(width, current.getWidth() / 2);
+            int halfHeight = Math.max(height, current.getHeight() / 2);
+            current = drawScaled(current, new BufferedImage(halfWidth, halfHeight, BufferedImage.TYPE_INT_ARGB), RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        return current;
+    }
+
+    /**
+     * Gets the interpolation for the final step of scaling an image
+     *
+     * @param image  Image to scale (within 2x of the size)
+     * @param width  Width
+     * @param height Height
+     * @return Interpolation rendering hint
+     */
+    private static Object getInterpolation(BufferedImage image, int width, int height) {
+        // Bicubic is ~4x the cost of bilinear in software, so only pay for it when reducing, where it matters most
+        boolean reducing = width < image.getWidth() || height < image.getHeight();
+        return reducing ? RenderingHints.VALUE_INTERPOLATION_BICUBIC : RenderingHints.VALUE_INTERPOLATION_BILINEAR;
+    }
+
+    /**
+     * Draws an image scaled to fill another image.
+     * Large outputs are split into horizontal strips that are drawn in parallel; each strip samples from the whole
+     * source image so there are no seams.
+     *
+     * @param image         Image to scale
+     * @param scaledImage   Image to draw into
+     * @param interpolation Interpolation rendering hint
+     * @return Scaled image
+     */
+    private static BufferedImage drawScaled(BufferedImage image, BufferedImage scaledImage, Object interpolation) {
+        int width = scaledImage.getWidth();
+        int height = scaledImage.getHeight();
+        AffineTransform transform = AffineTransform.getScaleInstance(
+                (double) width / image.getWidth(), (double) height / image.getHeight());
+
+        int strips = 1;
+        if ((long) width * height >= PARALLEL_SCALE_THRESHOLD) {
+            strips = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), height / MIN_STRIP_HEIGHT));
+        }
+        int stripHeight = (height + strips - 1) / strips;
+
+        IntStream.range(0, strips).parallel().forEach(i -> {
+            int y = i * stripHeight;
+            int h = Math.min(stripHeight, height - y);
+            if (h <= 0) return;
+
+            Graphics2D g2d = scaledImage.getSubimage(0, y, width, h).createGraphics();
+            g2d.setComposite(AlphaComposite.Src);
+            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            g2d.translate(0, -y);
+            g2d.drawImage(image, transform, null);
+            g2d.dispose();
+        });
+
+        return scaledImage;
+    }
+
     /**
      * Converts a BufferedImage (not serializable) to a byte array (serializable)
      *
@@ -48,12 +187,83 @@ public class ImageUtils {
         if (image == null) {
             return new byte[0];
         }
+        return imageToPNG(image);
+    }
+
+    /**
+     * Gets the number of strips to tile an image into
+     *
+     * @param image Buffered Image
+     * @return Number of strips (1 if the image is too small to be worth tiling)
+     */
+    public static int getTileStrips(BufferedImage image) {
+        if ((long) image.getWidth() * image.getHeight() < TILE_THRESHOLD) {
+            return 1;
+        }
+        return Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), image.getHeight() / MIN_STRIP_HEIGHT));
+    }
+
+    /**
+     * Converts a BufferedImage to a PNG byte array
+     *
+     * @param image Buffered Image
+     * @return byte array
+     */
+    private static byte[] imageToPNG(BufferedImage image) throws IOException {
         ByteArrayOutputStream output = new ByteArrayOutputStream();
         ImageIO.write(image, "png", output);
         output.flush();
         return output.toByteArray();
     }
 
+    /**
+     * Converts a BufferedImage to a tiled byte array.
+     * The image is split into horizontal strips which are compressed (as PNGs) in parallel.
+     * Only sinks that advertise PayloadCodecs.TILED_IMAGE_ID can read tiled images.
+     * <p>
+     * Format: "TILE", width, height, number of strips, then for each strip: y, height, length, PNG bytes.
+     *
+     * @param image  Buffered Image
+     * @param strips Number of strips
+     * @return byte array
+     */
+    public static byte[] imageToTiledBytes(BufferedImage image, int strips) throws IOException {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int stripHeight = (height + strips - 1) / strips;
+        int stripCount = (height + stripHeight - 1) / stripHeight;
+
+        byte[][] encoded;
+        try {
+            encoded = IntStream.range(0, stripCount).parallel().mapToObj(i -> {
+                int y = i * stripHeight;
+                try {
+                    return imageToPNG(image.getSubimage(0, y, width, Math.min(stripHeight, height - y)));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }).toArray(byte[][]::new);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(Arrays.stream(encoded).mapToInt(e -> e.length + 12).sum() + 16);
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.write(TILE_MAGIC);
+        output.writeInt(width);
+        output.writeInt(height);
+        output.writeInt(stripCount);
+        for (int i = 0; i < stripCount; i++) {
+            int y = i * stripHeight;
+            output.writeInt(y);
+            output.writeInt(Math.min(stripHeight, height - y));
+            output.writeInt(encoded[i].length);
+            output.write(encoded[i]);
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
     /**
      * Converts a byte array (serializable) to a BufferedImage (not serializable)
      *
@@ -61,7 +271,149 @@ public class ImageUtils {
      * @return Buffered Image
      */
     public static BufferedImage bytesToImage(byte[] bytes) throws IOException {
+        if (isTiled(bytes)) {
+            return tiledBytesToImage(bytes);
+        }
         ByteArrayInputStream input = new ByteArrayInputStream(bytes);
         return ImageIO.read(input);
     }
+
+    /**
+     * Converts a byte array to a BufferedImage, decoding into an image from the pool.
+     * The image should be released back to the pool once it is no longer needed.
+     *
+     * @param bytes byte array
+     * @param pool  Pool to take the image from (if null, a new image is created)
+     * @return Buffered Image
+     */
+    public static BufferedImage bytesToImage(byte[] bytes, ImagePool pool) throws IOException {
+        if (pool == null) {
+            return bytesToImage(bytes);
+        }
+        if (isTiled(bytes)) {
+            return tiledBytesToImage(bytes, pool);
+        }
+        return readPNG(bytes, 0, bytes.length, pool, null);
+    }
+
+    /**
+     * Reads a PNG into a TYPE_INT_ARGB image.
+     * 8 bit RGBA PNGs (what imageToBytes creates) are decoded straight into the image, anything else is decoded
+     * normally then drawn into the image.
+     *
+     * @param bytes       byte array
+     * @param offset      Offset of the PNG in the array
+     * @param length      Length of the PNG
+     * @param pool        Pool to take the image from if there is no destination
+     * @param destination Image to read into (must be the same size as the PNG), or null to take one from the pool
+     * @return Image the PNG was read into
+     */
+    private static BufferedImage readPNG(byte[] bytes, int offset, int length, ImagePool pool, BufferedImage destination) throws IOException {
+        ImageReader reader = PNG_READER.get();
+        BufferedImage acquired = null;
+        boolean read = false;
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes, offset, length))) {
+            reader.setInput(input, true, true);
+            int width = reader.getWidth(0);
+            int height = reader.getHeight(0);
+            if (destination == null) {
+                destination = acquired = pool.acquire(width, height);
+            } else if (destination.getWidth() != width || destination.getHeight() != height) {
+                throw new IOException("Image size does not match destination.");
+            }
+
+            ImageTypeSpecifier type = reader.getRawImageType(0);
+            if (type != null && type.getNumBands() == 4 && type.getBitsPerBand(0) == 8
+                    && !(type.getColorModel() instanceof IndexColorModel)) {
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setDestination(destination);
+                reader.read(0, param);
+            } else {
+                BufferedImage image = reader.read(0);
+                Graphics2D g2d = destination.createGraphics();
+                g2d.setComposite(AlphaComposite.Src);
+                g2d.drawImage(image, 0, 0, null);
+                g2d.dispose();
+            }
+            read = true;
+            return destination;
+        } finally {
+            reader.setInput(null);
+            // Hand the image back if it couldn't be read into, otherwise every corrupt frame takes one from the pool
+            if (!read && acquired != null) pool.release(acquired);
+        }
+    }
+
+    /**
+     * Returns whether a byte array is a tiled image
+     *
+     * @param bytes byte array
+     * @return True if the bytes are a tiled image
+     */
+    public static boolean isTiled(byte[] bytes) {
+        if (bytes.length < TILE_MAGIC.length) return false;
+        for (int i = 0; i < TILE_MAGIC.length; i++) {
+            if (bytes[i] != TILE_MAGIC[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Converts a tiled byte array to a BufferedImage, decoding the strips in parallel
+     *
+     * @param bytes byte array
+     * @return Buffered Image
+     */
+    private static BufferedImage tiledBytesToImage(byte[] bytes) throws IOException {
+        return tiledBytesToImage(bytes, null);
+    }
+
+    /**
+     * Converts a tiled byte array to a BufferedImage, decoding the strips in parallel
+     *
+     * @param bytes byte array
+     * @param pool  Pool to take the image from (if null, a new image is created)
+     * @return Buffered Image
+     */
+    private static BufferedImage tiledBytesToImage(byte[] bytes, ImagePool pool) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes, TILE_MAGIC.length, bytes.length - TILE_MAGIC.length));
+        int width = input.readInt();
+        int height = input.readInt();
+        int stripCount = input.readInt();
+
+        int[] stripY = new int[stripCount];
+        int[] stripHeight = new int[stripCount];
+        int[] stripOffset = new int[stripCount];
+        int[] stripLength = new int[stripCount];
+        int offset = TILE_MAGIC.length + 12;
+        for (int i = 0; i < stripCount; i++) {
+            stripY[i] = input.readInt();
+            stripHeight[i] = input.readInt();
+            stripLength[i] = input.readInt();
+            stripOffset[i] = offset + 12;
+            offset += 12 + stripLength[i];
+            if (input.skipBytes(stripLength[i]) != stripLength[i] || stripY[i] + stripHeight[i] > height) {
+                throw new IOException("Invalid tiled image.");
+            }
+        }
+
+        BufferedImage image = (pool != null) ? pool.acquire(width, height) : new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        boolean read = false;
+        try {
+            // Each strip is decoded straight into its part of the image
+            IntStream.range(0, stripCount).parallel().forEach(i -> {
+                try {
+                    readPNG(bytes, stripOffset[i], stripLength[i], null, image.getSubimage(0, stripY[i], width, stripHeight[i]));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            read = true;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            if (!read && pool != null) pool.release(image);
+        }
+        return image;
+    }
 }
@@ -0,0 +1,122 @@
+package shared.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock free histogram of latencies (in nanoseconds).
+ * Buckets are log-linear: 16 buckets per power of two, so any latency is recorded to within ~6%, from
+ * nanoseconds up to hours, in ~1000 buckets.
+ *
+ * @author Huw Jones
+ * @since 19/10/2026
+ */
+public class LatencyHistogram {
+
+    /**
+     * Number of buckets per power of two (as a power of two)
+     */
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS + 2 * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Gets the name of the histogram
+     *
+     * @return Name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a latency
+     *
+     * @param nanos Latency (in nanoseconds); negative latencies are recorded as 0
+     */
+    public void record(long nanos) {
+        counts.incrementAndGet(getBucket(Math.max(0, nanos)));
+    }
+
+    /**
+     * Gets the number of latencies recorded
+     *
+     * @return Count
+     */
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Gets a latency percentile
+     *
+     * @param percentile Percentile (0-100)
+     * @return Latency (in nanoseconds, lower bound of the bucket), or -1 if nothing has been recorded
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) return -1;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100d * total));
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+            if (count >= rank) return getLowerBound(i);
+        }
+        return getLowerBound(BUCKETS - 1);
+    }
+
+    /**
+     * Writes the histogram as CSV rows: name, bucket lower bound (ns), count. Empty buckets are skipped.
+     *
+     * @param b Builder to append to
+     */
+    public void appendCSV(StringBuilder b) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long count = counts.get(i);
+            if (count == 0) continue;
+            b.append(name).append(',').append(getLowerBound(i)).append(',').append(count).append('\n');
+        }
+    }
+
+    /**
+     * Gets the bucket a latency falls in
+     *
+     * @param value Latency
+     * @return Bucket index
+     */
+    static int getBucket(long value) {
+        if (value < SUB_BUCKETS * 2) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return shift * SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Gets the smallest latency in a bucket
+     *
+     * @param bucket Bucket index
+     * @return Latency
+     */
+    static long getLowerBound(int bucket) {
+        if (bucket < SUB_BUCKETS * 2) return bucket;
+        int shift = bucket / SUB_BUCKETS - 1;
+        return (long) (bucket % SUB_BUCKETS + SUB_BUCKETS) << shift;
+    }
+
+    @Override
+    public String toString() {
+        if (getCount() == 0) return name + ": no samples";
+        return String.format("%s: p50: %.2fms, p90: %.2fms, p99: %.2fms, max: %.2fms, count: %d",
+                name, getPercentile(50) / 1e6, getPercentile(90) / 1e6, getPercentile(99) / 1e6, getPercentile(100) / 1e6, getCount());
+    }
+}
@@ -5,6 +5,7 @@ import shared.exceptions.ConnectException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.rmi.server.RMISocketFactory;
 
 /**
  * RMI Utils
@@ -26,7 +27,9 @@ public class RMIUtils {
         try {
             Registry registry;
             Log.Info("Locating registry...");
-            registry = LocateRegistry.getRegistry(server, port, new CustomRMISocketFactory());
+            // Use the configured factory if one has been set, so registry connections get the same socket options
+            RMISocketFactory factory = RMISocketFactory.getSocketFactory();
+            registry = LocateRegistry.getRegistry(server, port, (factory instanceof CustomRMISocketFactory) ? factory : new CustomRMISocketFactory());
 
             // By calling list, it either succeeds (registry connected), or throws a RemoteException (connection failed)
             registry.list();